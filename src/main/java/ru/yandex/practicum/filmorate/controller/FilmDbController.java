@@ -1,18 +1,29 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.LikeResultDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.service.FilmDbService;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
-import java.util.Collection;
 import java.util.List;
 
 @Slf4j
@@ -21,16 +32,63 @@ import java.util.List;
 @RequestMapping("/films")
 public class FilmDbController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final FilmDbService filmDbService;
+    private final FilmImportService filmImportService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmDbController(FilmDbService filmDbService) {
+    public FilmDbController(FilmDbService filmDbService, FilmImportService filmImportService,
+                            ObjectMapper objectMapper) {
         this.filmDbService = filmDbService;
+        this.filmImportService = filmImportService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public Collection<FilmDto> getFilms() {
-        return filmDbService.getAllFilms();
+    public ResponseEntity<List<FilmDto>> getFilms(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        PageDto<FilmDto> page = filmDbService.getFilmsPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
+        StreamingResponseBody body = out -> filmDbService.streamAllFilms(film -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(film));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(body);
+    }
+
+    /**
+     * Импорт фильмов по одному JSON на строку; в ответ построчные результаты, тоже NDJSON.
+     */
+    @PostMapping(value = "/bulk", consumes = APPLICATION_NDJSON)
+    public void importFilms(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON);
+        OutputStream out = response.getOutputStream();
+        filmImportService.importFilms(body, result -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
     }
 
     @GetMapping("/{filmId}")
@@ -40,14 +98,30 @@ public class FilmDbController {
 
     @GetMapping("/popular")
     public List<FilmDto> getPopularFilms(
-            @RequestParam(required = false) Integer count) {
-        List<FilmDto> result = filmDbService.getMostPopularFilms(count);
+            @RequestParam(required = false) Integer count,
+            @RequestParam(required = false) Integer genreId,
+            @RequestParam(required = false) Integer mpaId,
+            @RequestParam(required = false) Integer year) {
+        List<FilmDto> result = filmDbService.getMostPopularFilms(count, genreId, mpaId, year);
         if (result.isEmpty()) {
             log.warn("Popular films request returned empty list. Check if any films have likes.");
         }
         return result;
     }
 
+    @GetMapping("/trending")
+    public List<FilmDto> getTrendingFilms(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(required = false) Integer count) {
+        return filmDbService.getTrendingFilms(window, count);
+    }
+
+    @GetMapping("/{filmId}/similar")
+    public List<FilmDto> getSimilarFilms(@PathVariable long filmId,
+                                         @RequestParam(required = false) Integer limit) {
+        return filmDbService.getSimilarFilms(filmId, limit);
+    }
+
     @PostMapping
     public FilmDto addFilm(@Valid @RequestBody NewFilmRequest newFilm) {
         if (newFilm.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
@@ -65,13 +139,13 @@ public class FilmDbController {
     }
 
     @PutMapping("/{filmId}/like/{userId}")
-    public FilmDto likeFilm(@PathVariable long filmId,
+    public LikeResultDto likeFilm(@PathVariable long filmId,
                             @PathVariable long userId) {
         return filmDbService.addLike(filmId, userId);
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public FilmDto deleteLike(@PathVariable long id,
+    public LikeResultDto deleteLike(@PathVariable long id,
                               @PathVariable long userId) {
         return filmDbService.removeLike(id, userId);
     }
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+
+import java.util.Map;
+
+/**
+ * Служебная точка для справочников: GET /actuator/referencedata показывает размеры загруженных справочников,
+ * POST /actuator/referencedata перечитывает их из БД после ручного изменения строк genre/mpa_rating.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "referencedata")
+@RequiredArgsConstructor
+public class ReferenceDataEndpoint {
+    private final ReferenceDataRegistry referenceData;
+
+    @ReadOperation
+    public Map<String, Integer> sizes() {
+        return Map.of("genres", referenceData.getGenres().size(),
+                "mpa", referenceData.getMpaRatings().size());
+    }
+
+    @WriteOperation
+    public Map<String, Integer> refresh() {
+        log.info("Reloading reference data on request");
+        referenceData.refresh();
+        return sizes();
+    }
+}
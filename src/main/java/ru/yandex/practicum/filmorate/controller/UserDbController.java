@@ -1,33 +1,58 @@
 package ru.yandex.practicum.filmorate.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.CommonFriendsCountDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDto;
 import ru.yandex.practicum.filmorate.dto.NewUserRequest;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.UpdateUserRequest;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.service.UserDbService;
+import ru.yandex.practicum.filmorate.service.UserImportService;
 
-import java.util.Collection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 @Primary
 public class UserDbController {
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final UserDbService userDbService;
+    private final UserImportService userImportService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserDbController(UserDbService userDbService) {
+    public UserDbController(UserDbService userDbService, UserImportService userImportService,
+                            ObjectMapper objectMapper) {
         this.userDbService = userDbService;
+        this.userImportService = userImportService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public Collection<UserDto> getUsers() {
-        return userDbService.getAllUsers();
+    public ResponseEntity<List<UserDto>> getUsers(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        PageDto<UserDto> page = userDbService.getUsersPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 
     @GetMapping("/{userId}")
@@ -41,6 +66,24 @@ public class UserDbController {
         return userDbService.createUser(request);
     }
 
+    /**
+     * Импорт пользователей по одному JSON на строку; в ответ построчные результаты, тоже NDJSON.
+     */
+    @PostMapping(value = "/bulk", consumes = APPLICATION_NDJSON)
+    public void importUsers(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON);
+        OutputStream out = response.getOutputStream();
+        userImportService.importUsers(body, result -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
     @PutMapping()
     public UserDto updateUser(@RequestBody UpdateUserRequest request) {
         return userDbService.updateUser(request.getId(), request);
@@ -67,6 +110,65 @@ public class UserDbController {
         return userDbService.getFriends(userId);
     }
 
+    @GetMapping("/{userId}/path/{otherId}")
+    public List<UserDto> getFriendshipPath(
+            @PathVariable long userId,
+            @PathVariable long otherId,
+            @RequestParam(required = false) Integer maxDepth) {
+        return userDbService.getFriendshipPath(userId, otherId, maxDepth);
+    }
+
+    @GetMapping("/{userId}/likes")
+    public ResponseEntity<List<FilmDto>> getLikedFilms(
+            @PathVariable long userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        PageDto<FilmDto> page = userDbService.getLikedFilmsPage(userId, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Какие из переданных фильмов пользователь лайкнул - для кнопок лайка в списках фильмов.
+     */
+    @GetMapping("/{userId}/likes/check")
+    public List<Long> getLikedFilmIds(
+            @PathVariable long userId,
+            @RequestParam List<Long> filmIds) {
+        return userDbService.getLikedFilmIds(userId, filmIds);
+    }
+
+    @GetMapping("/{userId}/recommendations")
+    public List<FilmDto> getFilmRecommendations(
+            @PathVariable long userId,
+            @RequestParam(required = false) Integer limit) {
+        return userDbService.getFilmRecommendations(userId, limit);
+    }
+
+    @GetMapping("/{userId}/friends/popular-films")
+    public List<FilmDto> getPopularFilmsAmongFriends(
+            @PathVariable long userId,
+            @RequestParam(required = false) Integer count) {
+        return userDbService.getPopularFilmsAmongFriends(userId, count);
+    }
+
+    @GetMapping("/{userId}/friends/suggestions")
+    public List<FriendSuggestionDto> getFriendSuggestions(
+            @PathVariable long userId,
+            @RequestParam(required = false) Integer limit) {
+        return userDbService.getFriendSuggestions(userId, limit);
+    }
+
+    @GetMapping("/{userId}/friends/common")
+    public List<CommonFriendsCountDto> countCommonFriends(
+            @PathVariable long userId,
+            @RequestParam List<Long> otherIds) {
+        return userDbService.countCommonFriends(userId, otherIds);
+    }
+
     @GetMapping("/{userId}/friends/common/{otherId}")
     public List<UserDto> getCommonFriends(
             @PathVariable long userId,
@@ -3,22 +3,38 @@ package ru.yandex.practicum.filmorate.dal;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
+import ru.yandex.practicum.filmorate.dal.mappers.ColumnIndexRowMapper;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
 
 @RequiredArgsConstructor
 public class BaseRepository<T> {
+    // Фиксированные размеры IN-списков: текст запроса повторяется и попадает в кэш разобранных запросов БД
+    private static final int[] IN_LIST_BUCKETS = {16, 64, 256, 1024};
+    private static final String[] IN_LIST_PLACEHOLDERS = Arrays.stream(IN_LIST_BUCKETS)
+            .mapToObj(size -> String.join(",", Collections.nCopies(size, "?")))
+            .toArray(String[]::new);
+
     protected final JdbcTemplate jdbc;
     protected final RowMapper<T> mapper;
 
+    // Для индексных мапперов берём план колонок, закэшированный по тексту запроса
+    protected RowMapper<T> mapperFor(String query) {
+        return mapper instanceof ColumnIndexRowMapper<T> indexed ? indexed.forQuery(query) : mapper;
+    }
+
     protected Optional<T> findById(String query, Object... args) {
         try {
-            T result = jdbc.queryForObject(query, mapper, args);
+            T result = jdbc.queryForObject(query, mapperFor(query), args);
             return Optional.ofNullable(result);
         } catch (EmptyResultDataAccessException ignored) {
             return Optional.empty();
@@ -26,7 +42,7 @@ public class BaseRepository<T> {
     }
 
     protected List<T> findAll(String query, Object... args) {
-        return jdbc.query(query, mapper, args);
+        return jdbc.query(query, mapperFor(query), args);
     }
 
     protected boolean delete(String query, long id) {
@@ -66,11 +82,69 @@ public class BaseRepository<T> {
     }
 
     protected Set<Integer> findAllExistingIds(String baseQuery, Set<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        queryInBatches(baseQuery, ids, rs -> existing.add(rs.getInt(1)));
+        return existing;
+    }
+
+    /**
+     * Выполняет запрос с IN-списком по частям. Шаблон содержит %s на месте плейсхолдеров;
+     * каждая часть дополняется повтором последнего id до ближайшего размера из IN_LIST_BUCKETS,
+     * а подготовленный запрос каждого размера переиспользуется между частями.
+     */
+    protected void queryInBatches(String queryTemplate, Collection<?> ids, RowCallbackHandler handler) {
+        queryInBatches(queryTemplate, new Object[0], ids, handler);
+    }
+
+    /**
+     * То же, но перед IN-списком в запросе стоят параметры leadingArgs, одинаковые для всех частей.
+     */
+    protected void queryInBatches(String queryTemplate, Object[] leadingArgs, Collection<?> ids,
+                                  RowCallbackHandler handler) {
         if (ids == null || ids.isEmpty()) {
-            return new HashSet<>();
+            return;
+        }
+        List<?> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int maxBucket = IN_LIST_BUCKETS[IN_LIST_BUCKETS.length - 1];
+
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            PreparedStatement[] statements = new PreparedStatement[IN_LIST_BUCKETS.length];
+            try {
+                for (int from = 0; from < distinctIds.size(); from += maxBucket) {
+                    List<?> chunk = distinctIds.subList(from, Math.min(from + maxBucket, distinctIds.size()));
+                    int bucket = bucketFor(chunk.size());
+                    if (statements[bucket] == null) {
+                        statements[bucket] = connection.prepareStatement(
+                                String.format(queryTemplate, IN_LIST_PLACEHOLDERS[bucket]));
+                    }
+                    PreparedStatement statement = statements[bucket];
+                    for (int i = 0; i < leadingArgs.length; i++) {
+                        statement.setObject(i + 1, leadingArgs[i]);
+                    }
+                    for (int i = 0; i < IN_LIST_BUCKETS[bucket]; i++) {
+                        statement.setObject(leadingArgs.length + i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            handler.processRow(rs);
+                        }
+                    }
+                }
+            } finally {
+                for (PreparedStatement statement : statements) {
+                    JdbcUtils.closeStatement(statement);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static int bucketFor(int size) {
+        for (int i = 0; i < IN_LIST_BUCKETS.length; i++) {
+            if (size <= IN_LIST_BUCKETS[i]) {
+                return i;
+            }
         }
-        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
-        String sql = String.format(baseQuery, placeholders);
-        return new HashSet<>(jdbc.queryForList(sql, ids.toArray(), Integer.class));
+        return IN_LIST_BUCKETS.length - 1;
     }
 }
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.film.Film;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+/**
+ * Ограниченный LRU-кэш карточек фильмов для {@link FilmRepository#getFilmById} с TTL на запись.
+ * Наружу всегда отдаются копии, потому что сервисы меняют полученный {@link Film} перед сохранением.
+ */
+@Slf4j
+@Component
+public class FilmCache {
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMs;
+
+    private final Map<Long, CachedFilm> films;
+    // Растёт при каждой инвалидации: загрузка, начавшаяся до неё, не кладёт в кэш устаревшую запись
+    private long generation;
+
+    private final Counter hits = Metrics.counter("filmorate.films.cache.hits");
+    private final Counter misses = Metrics.counter("filmorate.films.cache.misses");
+    private final Counter evictions = Metrics.counter("filmorate.films.cache.evictions");
+
+    public FilmCache(@Value("${filmorate.films.cache.enabled:true}") boolean enabled,
+                     @Value("${filmorate.films.cache.max-size:10000}") int maxSize,
+                     @Value("${filmorate.films.cache.ttl-ms:600000}") long ttlMs) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.films = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedFilm> eldest) {
+                if (size() > FilmCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Metrics.gauge("filmorate.films.cache.size", this, FilmCache::size);
+        log.info("Film cache: enabled={}, maxSize={}, ttlMs={}", enabled, maxSize, ttlMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<Film> get(long filmId, LongFunction<Optional<Film>> loader) {
+        if (!enabled) {
+            return loader.apply(filmId);
+        }
+
+        long loadGeneration;
+        synchronized (this) {
+            CachedFilm cached = films.get(filmId);
+            if (cached != null) {
+                if (cached.expiresAt > System.currentTimeMillis()) {
+                    hits.increment();
+                    return Optional.of(copy(cached.film));
+                }
+                films.remove(filmId);
+                evictions.increment();
+            }
+            misses.increment();
+            loadGeneration = generation;
+        }
+
+        Optional<Film> loaded = loader.apply(filmId);
+        loaded.ifPresent(film -> {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    films.put(filmId, new CachedFilm(copy(film), System.currentTimeMillis() + ttlMs));
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Сбрасывает запись сразу и ещё раз после завершения текущей транзакции,
+     * чтобы параллельное чтение до коммита (или откат) не оставило в кэше старую версию.
+     */
+    public void invalidate(long filmId) {
+        if (!enabled) {
+            return;
+        }
+        evict(filmId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(filmId);
+                }
+            });
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        films.clear();
+    }
+
+    public synchronized int size() {
+        return films.size();
+    }
+
+    private synchronized void evict(long filmId) {
+        generation++;
+        films.remove(filmId);
+    }
+
+    private static Film copy(Film film) {
+        Film copy = new Film(film.getId(), film.getName(), film.getDescription(),
+                film.getReleaseDate(), film.getDuration());
+        copy.setMpa(film.getMpa());
+        copy.setGenres(new HashSet<>(film.getGenres()));
+        copy.setLikes(new HashSet<>(film.getLikes()));
+        return copy;
+    }
+
+    private record CachedFilm(Film film, long expiresAt) {
+    }
+}
@@ -1,18 +1,42 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.FilmFacets;
 import ru.yandex.practicum.filmorate.model.film.Genre;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,20 +51,45 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
                     "FROM films f LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id";
 
     private static final String GET_FILM_BY_ID_QUERY = GET_ALL_FILMS_QUERY + " WHERE f.film_id = ?";
+    private static final String GET_FILMS_PAGE_QUERY =
+            GET_ALL_FILMS_QUERY + " WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+    private static final String GET_FILMS_BY_IDS_QUERY = GET_ALL_FILMS_QUERY + " WHERE f.film_id IN (%s)";
+    private static final String STREAM_FILMS_QUERY = GET_ALL_FILMS_QUERY + " ORDER BY f.film_id";
     private static final String INSERT_FILM_QUERY =
             "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
                     "VALUES (?, ?, ?, ?, ?)";
     private static final String UPDATE_FILM_QUERY =
             "UPDATE films SET name = ?, description = ?, release_date = ?, " +
                     "duration = ?, mpa_rating_id = ? WHERE film_id = ?";
+    // Частичное обновление: null-параметр оставляет значение колонки; обновлённая строка читается тем же запросом
+    private static final String PATCH_FILM_QUERY =
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_rating_id, " +
+                    "m.mpa_id, m.mpa_name, m.description AS mpa_description " +
+                    "FROM FINAL TABLE (UPDATE films SET name = COALESCE(?, name), " +
+                    "description = COALESCE(?, description), release_date = COALESCE(?, release_date), " +
+                    "duration = COALESCE(?, duration), mpa_rating_id = COALESCE(?, mpa_rating_id) " +
+                    "WHERE film_id = ?) f LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id";
     private static final String DELETE_FILM_QUERY = "DELETE FROM films WHERE film_id = ?";
+    private static final String DELETE_FILM_LIKES_QUERY =
+            "SELECT user_id, liked_at FROM OLD TABLE (DELETE FROM film_likes WHERE film_id = ?)";
     // endregion
 
     // region SQL Queries - Genres
     private static final String INSERT_FILM_GENRE_QUERY =
             "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
-    private static final String DELETE_FILM_GENRES_QUERY =
-            "DELETE FROM film_genre WHERE film_id = ?";
+    private static final String DELETE_FILM_GENRE_QUERY =
+            "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
+    private static final String GET_FILM_GENRE_IDS_QUERY =
+            "SELECT genre_id FROM film_genre WHERE film_id = ?";
+    private static final String GET_ALL_FILM_GENRE_IDS_QUERY =
+            "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id";
+    private static final String GET_GENRES_FOR_FILMS_QUERY =
+            "SELECT fg.film_id, g.genre_id, g.name FROM film_genre fg " +
+                    "JOIN genre g ON fg.genre_id = g.genre_id " +
+                    "WHERE fg.film_id IN (%s) ORDER BY g.genre_id";
+    private static final String STREAM_FILM_GENRES_QUERY =
+            "SELECT fg.film_id, g.genre_id, g.name FROM film_genre fg " +
+                    "JOIN genre g ON fg.genre_id = g.genre_id ORDER BY fg.film_id, g.genre_id";
     private static final String GET_FILM_GENRES_QUERY =
             "SELECT g.genre_id, g.name FROM film_genre fg " +
                     "JOIN genre g ON fg.genre_id = g.genre_id " +
@@ -48,10 +97,57 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
     // endregion
 
     // region SQL Queries - Likes
-    private static final String INSERT_FILM_LIKE_QUERY =
-            "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
-    private static final String DELETE_FILM_LIKE_QUERY =
-            "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+    // Лайк целиком - один запрос: вставка строки, like_count и версия film_likes меняются вложенными
+    // delta-таблицами только если строка действительно вставлена. Повторный лайк не возвращает строк,
+    // а несуществующие фильм или пользователь дают ошибку внешнего ключа. Время лайка берётся из вставленной
+    // строки, чтобы событие несло то же время, что и БД. Параметры: filmId, filmId, userId, filmId, userId
+    static final String LIKE_FILM_QUERY =
+            "SELECT fl.liked_at, " +
+                    "(SELECT f.like_count FROM FINAL TABLE " +
+                    "(UPDATE films SET like_count = like_count + 1 WHERE film_id = ?) f), " +
+                    "NEXT VALUE FOR film_likes_version " +
+                    "FROM FINAL TABLE (INSERT INTO film_likes (film_id, user_id) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)) fl";
+    // То же для снятия лайка; если удалять было нечего, строк нет и счётчик не трогается.
+    // Параметры: filmId, filmId, userId
+    static final String UNLIKE_FILM_QUERY =
+            "SELECT fl.liked_at, " +
+                    "(SELECT f.like_count FROM FINAL TABLE " +
+                    "(UPDATE films SET like_count = like_count - 1 WHERE film_id = ?) f), " +
+                    "NEXT VALUE FOR film_likes_version " +
+                    "FROM OLD TABLE (DELETE FROM film_likes WHERE film_id = ? AND user_id = ?) fl";
+    // like_count = NULL - фильма нет
+    private static final String CHECK_LIKE_TARGETS_QUERY =
+            "SELECT (SELECT like_count FROM films WHERE film_id = ?) AS like_count, " +
+                    "EXISTS(SELECT 1 FROM users WHERE user_id = ?) AS user_exists";
+    private static final String GET_RANKED_FILM_FACETS_QUERY =
+            "SELECT f.film_id, f.like_count, f.mpa_rating_id, f.release_date, fg.genre_id " +
+                    "FROM films f LEFT JOIN film_genre fg ON fg.film_id = f.film_id " +
+                    "WHERE f.like_count > 0";
+    private static final String GET_FILM_FACETS_QUERY =
+            "SELECT f.film_id, f.like_count, f.mpa_rating_id, f.release_date, fg.genre_id " +
+                    "FROM films f LEFT JOIN film_genre fg ON fg.film_id = f.film_id " +
+                    "WHERE f.film_id = ?";
+    private static final String GET_LIKES_SINCE_QUERY =
+            "SELECT film_id, liked_at FROM film_likes WHERE liked_at >= ?";
+    // Оба запроса идут по индексу idx_film_likes_user (user_id, film_id)
+    private static final String GET_LIKED_FILMS_PAGE_QUERY =
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_rating_id, " +
+                    "m.mpa_id, m.mpa_name, m.description AS mpa_description " +
+                    "FROM film_likes fl " +
+                    "JOIN films f ON f.film_id = fl.film_id " +
+                    "LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id " +
+                    "WHERE fl.user_id = ? AND fl.film_id > ? ORDER BY fl.film_id LIMIT ?";
+    private static final String GET_LIKED_FILM_IDS_QUERY =
+            "SELECT film_id FROM film_likes WHERE user_id = ? AND film_id IN (%s)";
+    private static final String GET_ALL_LIKES_QUERY =
+            "SELECT user_id, film_id FROM film_likes ORDER BY user_id, film_id";
+    // Последовательность сдвигается в той же транзакции, что и любое изменение film_likes. Блокировок она
+    // не берёт и при откате не возвращается: откаченная транзакция лишь делает версию новее, чем нужно
+    static final String BUMP_LIKES_VERSION_QUERY = "SELECT NEXT VALUE FOR film_likes_version";
+    private static final String GET_LIKES_VERSION_QUERY =
+            "SELECT (SELECT COUNT(*) FROM film_likes), BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES " +
+                    "WHERE SEQUENCE_NAME = 'FILM_LIKES_VERSION'";
     // endregion
 
     // region SQL Queries - Special Operations
@@ -60,29 +156,103 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
                     "m.mpa_id, m.mpa_name, m.description AS mpa_description " +
                     "FROM films f " +
                     "LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id " +
-                    "WHERE EXISTS (SELECT 1 FROM film_likes WHERE film_id = f.film_id) " +
-                    "ORDER BY (SELECT COUNT(*) FROM film_likes WHERE film_id = f.film_id) DESC " +
+                    "WHERE f.like_count > 0 %s" +
+                    "ORDER BY f.like_count DESC, f.film_id " +
                     "LIMIT ?";
     private static final String CHECK_MPA_EXISTS_QUERY =
             "SELECT COUNT(*) FROM mpa_rating WHERE mpa_id = ?";
     // endregion
 
-    public FilmRepository(JdbcTemplate jdbc, RowMapper<Film> mapper) {
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final LikeWriteBehindBuffer likeBuffer;
+    private final FilmCache filmCache;
+    private final ReferenceDataRegistry referenceData;
+    // Метаданные таблицы читаются один раз, при первой вставке
+    private final SimpleJdbcInsert filmInsert;
+
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final RowMapper<LikeChange> LIKE_CHANGE_MAPPER = (rs, rowNum) ->
+            new LikeChange(rs.getTimestamp(1).toInstant(), rs.getInt(2));
+
+    private final DistributionSummary rowsTouchedPerUpdate = Metrics.summary("filmorate.films.update.rows_touched");
+    private final Counter genreRowsInserted = Metrics.counter("filmorate.films.genres.inserted");
+    private final Counter genreRowsDeleted = Metrics.counter("filmorate.films.genres.deleted");
+
+    public FilmRepository(JdbcTemplate jdbc, RowMapper<Film> mapper, ApplicationEventPublisher eventPublisher,
+                          TransactionTemplate transactionTemplate, LikeWriteBehindBuffer likeBuffer,
+                          FilmCache filmCache, ReferenceDataRegistry referenceData) {
         super(jdbc, mapper);
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.likeBuffer = likeBuffer;
+        this.filmCache = filmCache;
+        this.referenceData = referenceData;
+        this.filmInsert = new SimpleJdbcInsert(jdbc)
+                .withTableName("films")
+                .usingColumns("name", "description", "release_date", "duration", "mpa_rating_id")
+                .usingGeneratedKeyColumns("film_id");
     }
 
     // region Basic Film CRUD Operations
     @Override
     public Collection<Film> getFilms() {
-        List<Film> films = jdbc.query(GET_ALL_FILMS_QUERY, mapper);
+        List<Film> films = jdbc.query(GET_ALL_FILMS_QUERY, mapperFor(GET_ALL_FILMS_QUERY));
         loadGenresForFilms(films);
         return films;
     }
 
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        List<Film> films = jdbc.query(GET_FILMS_PAGE_QUERY, mapperFor(GET_FILMS_PAGE_QUERY), afterId, limit);
+        loadGenresForFilms(films);
+        return films;
+    }
+
+    /**
+     * Отдаёт все фильмы по одному, не держа каталог в памяти: фильмы и жанры читаются
+     * двумя курсорами, упорядоченными по film_id, и сливаются на лету.
+     */
+    @Transactional(readOnly = true)
+    public void streamFilms(Consumer<Film> consumer) {
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement filmStatement = prepareForwardOnly(connection, STREAM_FILMS_QUERY);
+                 PreparedStatement genreStatement = prepareForwardOnly(connection, STREAM_FILM_GENRES_QUERY);
+                 ResultSet films = filmStatement.executeQuery();
+                 ResultSet genres = genreStatement.executeQuery()) {
+                RowMapper<Film> rowMapper = mapperFor(STREAM_FILMS_QUERY);
+                boolean hasGenre = genres.next();
+                int rowNum = 0;
+                while (films.next()) {
+                    Film film = rowMapper.mapRow(films, rowNum++);
+                    while (hasGenre && genres.getLong("film_id") < film.getId()) {
+                        hasGenre = genres.next();
+                    }
+                    while (hasGenre && genres.getLong("film_id") == film.getId()) {
+                        film.getGenres().add(referenceData.genre(genres.getInt("genre_id"), genres.getString("name")));
+                        hasGenre = genres.next();
+                    }
+                    consumer.accept(film);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static PreparedStatement prepareForwardOnly(Connection connection, String query) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(STREAM_FETCH_SIZE);
+        return statement;
+    }
+
     @Override
     public Optional<Film> getFilmById(long id) {
+        return filmCache.get(id, this::loadFilmById);
+    }
+
+    private Optional<Film> loadFilmById(long id) {
         try {
-            Film film = jdbc.queryForObject(GET_FILM_BY_ID_QUERY, mapper, id);
+            Film film = jdbc.queryForObject(GET_FILM_BY_ID_QUERY, mapperFor(GET_FILM_BY_ID_QUERY), id);
             if (film != null) {
                 loadGenresForFilm(film);
             }
@@ -95,10 +265,6 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
 
     @Override
     public Film addFilm(Film film) {
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbc)
-                .withTableName("films")
-                .usingGeneratedKeyColumns("film_id");
-
         Map<String, Object> parameters = new HashMap<>();
         parameters.put("name", film.getName());
         parameters.put("description", film.getDescription());
@@ -106,44 +272,137 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
         parameters.put("duration", film.getDuration());
         parameters.put("mpa_rating_id", film.getMpa().getId());
 
-        long filmId = simpleJdbcInsert.executeAndReturnKey(parameters).longValue();
+        long filmId = filmInsert.executeAndReturnKey(parameters).longValue();
         film.setId(filmId);
-        updateFilmGenres(film);
+        insertFilmGenres(film);
+        filmCache.invalidate(filmId);
+        eventPublisher.publishEvent(new FilmChangedEvent(filmId));
         return film;
     }
 
+    /**
+     * Пакетная вставка для импорта: фильмы и их жанры пишутся JDBC-батчами по batchSize строк,
+     * сгенерированные id проставляются в переданные объекты. Транзакцией управляет вызывающий код.
+     */
+    public void addFilms(List<Film> films, int batchSize) {
+        for (int from = 0; from < films.size(); from += batchSize) {
+            List<Film> batch = films.subList(from, Math.min(from + batchSize, films.size()));
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM_QUERY, new String[]{"film_id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Film film = batch.get(i);
+                            ps.setString(1, film.getName());
+                            ps.setString(2, film.getDescription());
+                            ps.setObject(3, film.getReleaseDate());
+                            ps.setInt(4, film.getDuration());
+                            ps.setInt(5, film.getMpa().getId());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    }, keys);
+
+            List<Map<String, Object>> keyList = keys.getKeyList();
+            List<Object[]> genreRows = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                Film film = batch.get(i);
+                film.setId(((Number) keyList.get(i).values().iterator().next()).longValue());
+                if (film.getGenres() != null) {
+                    film.getGenres().forEach(genre -> genreRows.add(new Object[]{film.getId(), genre.getId()}));
+                }
+            }
+            if (!genreRows.isEmpty()) {
+                jdbc.batchUpdate(INSERT_FILM_GENRE_QUERY, genreRows);
+            }
+        }
+    }
+
     @Override
     @Transactional
     public Film updateFilm(Film film) {
-        // Сначала проверяем существование фильма
-        if (!filmExists(film.getId())) {
-            throw new NotFoundException("Film not found with id: " + film.getId());
-        }
+        return updateFilm(film, true);
+    }
 
+    /**
+     * Обновляет строку фильма; жанры синхронизируются только при updateGenres,
+     * и тогда в film_genre пишется лишь разница с сохранённым набором.
+     */
+    @Transactional
+    public Film updateFilm(Film film, boolean updateGenres) {
+        // Отсутствие фильма видно по числу обновлённых строк, отдельная проверка не нужна
         int updated = jdbc.update(UPDATE_FILM_QUERY,
                 film.getName(),
                 film.getDescription(),
                 film.getReleaseDate(),
                 film.getDuration(),
-                film.getMpa().getId(),
+                film.getMpa() != null ? film.getMpa().getId() : null,
                 film.getId());
 
         if (updated == 0) {
             throw new NotFoundException("Film not found with id: " + film.getId());
         }
 
-        updateFilmGenres(film);
+        int genreRows = updateGenres ? updateFilmGenres(film) : 0;
+        rowsTouchedPerUpdate.record(updated + genreRows);
+        filmCache.invalidate(film.getId());
+        eventPublisher.publishEvent(new FilmChangedEvent(film.getId()));
         return film;
     }
 
-    private boolean filmExists(long id) {
-        String query = "SELECT COUNT(*) FROM films WHERE film_id = ?";
-        Integer count = jdbc.queryForObject(query, Integer.class, id);
-        return count != null && count > 0;
+    /**
+     * Частичное обновление: null-поля patch сохраняют значения из БД, жанры синхронизируются только
+     * при updateGenres. Фильм обновляется и читается обратно одним запросом, поэтому ни предварительной
+     * загрузки, ни отдельной проверки существования нет: пустой результат означает, что фильма нет.
+     */
+    @Transactional
+    public Film patchFilm(Film patch, boolean updateGenres) {
+        List<Film> updated = jdbc.query(PATCH_FILM_QUERY, mapperFor(PATCH_FILM_QUERY),
+                patch.getName(),
+                patch.getDescription(),
+                patch.getReleaseDate(),
+                patch.getDuration(),
+                patch.getMpa() != null ? patch.getMpa().getId() : null,
+                patch.getId());
+        if (updated.isEmpty()) {
+            throw new NotFoundException("Film not found with id: " + patch.getId());
+        }
+
+        Film film = updated.get(0);
+        int genreRows = 0;
+        if (updateGenres) {
+            film.setGenres(patch.getGenres());
+            genreRows = updateFilmGenres(film);
+        } else {
+            loadGenresForFilm(film);
+        }
+        rowsTouchedPerUpdate.record(1 + genreRows);
+        filmCache.invalidate(film.getId());
+        eventPublisher.publishEvent(new FilmChangedEvent(film.getId()));
+        return film;
     }
 
+    /**
+     * Лайки удаляются явно, а не каскадом: индексы снимают их по обычным {@link FilmLikeEvent},
+     * а остальное состояние фильма выбрасывают по {@link FilmDeletedEvent}.
+     */
+    @Transactional
     public void deleteFilm(long id) {
-        jdbc.update(DELETE_FILM_QUERY, id);
+        List<FilmLikeEvent> unlikes = jdbc.query(DELETE_FILM_LIKES_QUERY, (rs, rowNum) -> new FilmLikeEvent(
+                id, rs.getLong("user_id"), false, rs.getTimestamp("liked_at").toInstant()), id);
+        if (!unlikes.isEmpty()) {
+            bumpLikesVersion();
+        }
+        int deleted = jdbc.update(DELETE_FILM_QUERY, id);
+        filmCache.invalidate(id);
+        if (deleted == 0) {
+            return;
+        }
+        unlikes.forEach(eventPublisher::publishEvent);
+        eventPublisher.publishEvent(new FilmDeletedEvent(id));
     }
 
 
@@ -158,10 +417,45 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
         return filmMap;
     }
 
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        List<Film> films = new ArrayList<>();
+        RowMapper<Film> rowMapper = mapperFor(GET_FILMS_BY_IDS_QUERY);
+        queryInBatches(GET_FILMS_BY_IDS_QUERY, ids, rs -> films.add(rowMapper.mapRow(rs, films.size())));
+        loadGenresForFilms(films);
+
+        Map<Long, Film> filmMap = new HashMap<>();
+        films.forEach(film -> filmMap.put(film.getId(), film));
+        return ids.stream()
+                .map(filmMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     public List<Film> getPopularFilms(Integer count) {
+        return getPopularFilms(count, null, null, null);
+    }
+
+    public List<Film> getPopularFilms(Integer count, Integer genreId, Integer mpaId, Integer year) {
         int limit = (count != null && count > 0) ? count : 10;
+        StringBuilder filters = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        if (genreId != null) {
+            filters.append("AND EXISTS (SELECT 1 FROM film_genre fg WHERE fg.film_id = f.film_id AND fg.genre_id = ?) ");
+            args.add(genreId);
+        }
+        if (mpaId != null) {
+            filters.append("AND f.mpa_rating_id = ? ");
+            args.add(mpaId);
+        }
+        if (year != null) {
+            filters.append("AND f.release_date >= ? AND f.release_date < ? ");
+            args.add(LocalDate.of(year, 1, 1));
+            args.add(LocalDate.of(year + 1, 1, 1));
+        }
+        args.add(limit);
         log.debug("Executing popular films query with limit: {}", limit);
-        List<Film> films = jdbc.query(GET_POPULAR_FILMS_QUERY, mapper, limit);
+        String query = String.format(GET_POPULAR_FILMS_QUERY, filters);
+        List<Film> films = jdbc.query(query, mapperFor(query), args.toArray());
         log.debug("Found {} films with likes", films.size());
         loadGenresForFilms(films);
         return films;
@@ -169,30 +463,173 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
     // endregion
 
     // region Like Operations
-    public void addLike(long filmId, long userId) {
+    /**
+     * Ставит лайк одним запросом {@link #LIKE_FILM_QUERY}: существование фильма и пользователя проверяют
+     * внешние ключи, повтор ничего не меняет. Возвращает, добавлен ли лайк, и число лайков фильма после него.
+     * В режиме write-behind лайк уходит в очередь вне транзакции: ожидание сброса очереди не держит
+     * соединение из пула, которое нужно самому сбросу. Число лайков тогда - на момент проверки, до записи.
+     */
+    public LikeResult addLike(long filmId, long userId) {
+        if (likeBuffer.isEnabled()) {
+            int likeCount = checkLikeTargets(filmId, userId);
+            likeBuffer.enqueue(filmId, userId, true);
+            return new LikeResult(true, likeCount);
+        }
+        return transactionTemplate.execute(status -> insertLike(filmId, userId));
+    }
+
+    /**
+     * Снимает лайк одним запросом {@link #UNLIKE_FILM_QUERY}; существование фильма и пользователя
+     * проверяется только если удалять было нечего. Возвращает, был ли лайк, и число лайков после снятия.
+     */
+    public LikeResult removeLike(long filmId, long userId) {
+        if (likeBuffer.isEnabled()) {
+            int likeCount = checkLikeTargets(filmId, userId);
+            likeBuffer.enqueue(filmId, userId, false);
+            return new LikeResult(true, likeCount);
+        }
+        return transactionTemplate.execute(status -> deleteLike(filmId, userId));
+    }
+
+    private LikeResult insertLike(long filmId, long userId) {
+        List<LikeChange> changes;
         try {
-            jdbc.update(INSERT_FILM_LIKE_QUERY, filmId, userId);
-            log.info("Like added - filmId: {}, userId: {}", filmId, userId);
-        } catch (Exception e) {
-            log.error("Error adding like", e);
-            throw new RuntimeException("Failed to add like");
+            changes = jdbc.query(LIKE_FILM_QUERY, LIKE_CHANGE_MAPPER, filmId, filmId, userId, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            // Параллельный такой же лайк успел раньше
+            changes = List.of();
+        } catch (DataIntegrityViolationException e) {
+            checkLikeTargets(filmId, userId);
+            throw e;
+        }
+        if (changes.isEmpty()) {
+            log.debug("Like already exists - filmId: {}, userId: {}", filmId, userId);
+            return new LikeResult(false, checkLikeTargets(filmId, userId));
         }
+        LikeChange change = changes.get(0);
+        eventPublisher.publishEvent(new FilmLikeEvent(filmId, userId, true, change.likedAt()));
+        log.info("Like added - filmId: {}, userId: {}", filmId, userId);
+        return new LikeResult(true, change.likeCount());
     }
 
-    public void removeLike(long filmId, long userId) {
-        int rowsDeleted = jdbc.update(DELETE_FILM_LIKE_QUERY, filmId, userId);
-        log.debug("Deleted {} rows for filmId {} and userId {}", rowsDeleted, filmId, userId);
-        if (rowsDeleted == 0) {
-            throw new NotFoundException(String.format(
-                    "Like not found for filmId %d and userId %d", filmId, userId));
+    private LikeResult deleteLike(long filmId, long userId) {
+        List<LikeChange> changes = jdbc.query(UNLIKE_FILM_QUERY, LIKE_CHANGE_MAPPER, filmId, filmId, userId);
+        log.debug("Deleted {} rows for filmId {} and userId {}", changes.size(), filmId, userId);
+        if (changes.isEmpty()) {
+            return new LikeResult(false, checkLikeTargets(filmId, userId));
         }
+        LikeChange change = changes.get(0);
+        eventPublisher.publishEvent(new FilmLikeEvent(filmId, userId, false, change.likedAt()));
+        return new LikeResult(true, change.likeCount());
+    }
+
+    /**
+     * Фильмы, лайкнутые пользователем, по возрастанию id после afterFilmId (keyset-пагинация).
+     */
+    public List<Film> getLikedFilmsPage(long userId, long afterFilmId, int limit) {
+        List<Film> films = jdbc.query(GET_LIKED_FILMS_PAGE_QUERY, mapperFor(GET_LIKED_FILMS_PAGE_QUERY),
+                userId, afterFilmId, limit);
+        loadGenresForFilms(films);
+        return films;
+    }
+
+    /**
+     * Какие из filmIds пользователь лайкнул.
+     */
+    public Set<Long> findLikedFilmIds(long userId, Collection<Long> filmIds) {
+        Set<Long> liked = new HashSet<>();
+        queryInBatches(GET_LIKED_FILM_IDS_QUERY, new Object[]{userId}, filmIds, rs -> liked.add(rs.getLong(1)));
+        return liked;
+    }
+
+    // Возвращает текущее число лайков фильма
+    private int checkLikeTargets(long filmId, long userId) {
+        return jdbc.queryForObject(CHECK_LIKE_TARGETS_QUERY, (rs, rowNum) -> {
+            int likeCount = rs.getInt("like_count");
+            if (rs.wasNull()) {
+                throw new NotFoundException("Film with id " + filmId + " not found");
+            }
+            if (!rs.getBoolean("user_exists")) {
+                throw new NotFoundException("User with id " + userId + " not found");
+            }
+            return likeCount;
+        }, filmId, userId);
+    }
+
+    public Map<Long, FilmFacets> loadRankedFilmFacets() {
+        return queryFacets(GET_RANKED_FILM_FACETS_QUERY);
+    }
+
+    public Optional<FilmFacets> getFilmFacets(long filmId) {
+        return Optional.ofNullable(queryFacets(GET_FILM_FACETS_QUERY, filmId).get(filmId));
+    }
+
+    private Map<Long, FilmFacets> queryFacets(String query, Object... args) {
+        Map<Long, FilmFacets> facets = new HashMap<>();
+        jdbc.query(query, rs -> {
+            long filmId = rs.getLong("film_id");
+            FilmFacets film = facets.get(filmId);
+            if (film == null) {
+                film = new FilmFacets(rs.getInt("like_count"), rs.getInt("mpa_rating_id"),
+                        rs.getDate("release_date").toLocalDate().getYear(), new HashSet<>());
+                facets.put(filmId, film);
+            }
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                film.getGenreIds().add(genreId);
+            }
+        }, args);
+        return facets;
+    }
+
+    public void forEachLikeSince(Instant since, BiConsumer<Long, Instant> consumer) {
+        jdbc.query(GET_LIKES_SINCE_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getTimestamp("liked_at").toInstant());
+        }, Timestamp.from(since));
+    }
+
+    /**
+     * Все лайки по порядку пользователей, без упаковки id: для построения индексов в памяти.
+     */
+    public void forEachLike(LikeConsumer consumer) {
+        jdbc.query(GET_ALL_LIKES_QUERY, rs -> {
+            consumer.accept(rs.getLong(1), rs.getLong(2));
+        });
+    }
+
+    /**
+     * Число лайков и номер версии film_likes, который растёт с каждой транзакцией, меняющей лайки через
+     * приложение: по ним проверяется снимок индекса. Правки film_likes в обход приложения версию не сдвигают.
+     */
+    public LikesVersion getLikesVersion() {
+        return jdbc.queryForObject(GET_LIKES_VERSION_QUERY,
+                (rs, rowNum) -> new LikesVersion(rs.getLong(1), rs.getLong(2)));
+    }
+
+    private void bumpLikesVersion() {
+        jdbc.queryForObject(BUMP_LIKES_VERSION_QUERY, Long.class);
+    }
+
+    @FunctionalInterface
+    public interface LikeConsumer {
+        void accept(long userId, long filmId);
+    }
+
+    /**
+     * Итог лайка или его снятия: изменилась ли строка film_likes и сколько у фильма лайков теперь.
+     */
+    public record LikeResult(boolean changed, int likeCount) {
+    }
+
+    private record LikeChange(Instant likedAt, int likeCount) {
+    }
+
+    public record LikesVersion(long count, long version) {
     }
     // endregion
 
     // region Genre Operations
-    private void updateFilmGenres(Film film) {
-        jdbc.update(DELETE_FILM_GENRES_QUERY, film.getId());
-
+    private void insertFilmGenres(Film film) {
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
             List<Object[]> batchArgs = film.getGenres().stream()
                     .map(genre -> new Object[]{film.getId(), genre.getId()})
@@ -202,13 +639,48 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
         }
     }
 
+    // Возвращает число затронутых строк film_genre
+    private int updateFilmGenres(Film film) {
+        Set<Integer> stored = new HashSet<>(
+                jdbc.queryForList(GET_FILM_GENRE_IDS_QUERY, Integer.class, film.getId()));
+        Set<Integer> wanted = new HashSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> wanted.add(genre.getId()));
+        }
+
+        List<Object[]> toDelete = stored.stream()
+                .filter(genreId -> !wanted.contains(genreId))
+                .map(genreId -> new Object[]{film.getId(), genreId})
+                .collect(Collectors.toList());
+        List<Object[]> toInsert = wanted.stream()
+                .filter(genreId -> !stored.contains(genreId))
+                .map(genreId -> new Object[]{film.getId(), genreId})
+                .collect(Collectors.toList());
+
+        if (!toDelete.isEmpty()) {
+            jdbc.batchUpdate(DELETE_FILM_GENRE_QUERY, toDelete);
+            genreRowsDeleted.increment(toDelete.size());
+        }
+        if (!toInsert.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_GENRE_QUERY, toInsert);
+            genreRowsInserted.increment(toInsert.size());
+        }
+        return toDelete.size() + toInsert.size();
+    }
+
+    public List<Integer> getFilmGenreIds(long filmId) {
+        return jdbc.queryForList(GET_FILM_GENRE_IDS_QUERY, Integer.class, filmId);
+    }
+
+    public void forEachFilmGenre(BiConsumer<Long, Integer> consumer) {
+        jdbc.query(GET_ALL_FILM_GENRE_IDS_QUERY, rs -> {
+            consumer.accept(rs.getLong(1), rs.getInt(2));
+        });
+    }
+
     private void loadGenresForFilm(Film film) {
-        List<Genre> genres = jdbc.query(GET_FILM_GENRES_QUERY, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("genre_id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, film.getId());
+        List<Genre> genres = jdbc.query(GET_FILM_GENRES_QUERY, (rs, rowNum) ->
+                referenceData.genre(rs.getInt("genre_id"), rs.getString("name")), film.getId());
         film.setGenres(new HashSet<>(genres));
     }
 
@@ -216,25 +688,13 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
         Map<Long, Film> filmMap = new HashMap<>();
         films.forEach(film -> filmMap.put(film.getId(), film));
 
-        if (filmMap.isEmpty()) {
-            return;
-        }
-
-        String inClause = String.join(",", Collections.nCopies(filmMap.size(), "?"));
-        String query = "SELECT fg.film_id, g.genre_id, g.name FROM film_genre fg " +
-                "JOIN genre g ON fg.genre_id = g.genre_id " +
-                "WHERE fg.film_id IN (" + inClause + ") ORDER BY g.genre_id";
-
-        jdbc.query(query, rs -> {
+        queryInBatches(GET_GENRES_FOR_FILMS_QUERY, filmMap.keySet(), rs -> {
             long filmId = rs.getLong("film_id");
             Film film = filmMap.get(filmId);
             if (film != null) {
-                Genre genre = new Genre();
-                genre.setId(rs.getInt("genre_id"));
-                genre.setName(rs.getString("name"));
-                film.getGenres().add(genre);
+                film.getGenres().add(referenceData.genre(rs.getInt("genre_id"), rs.getString("name")));
             }
-        }, filmMap.keySet().toArray());
+        });
     }
     // endregion
 
@@ -1,9 +1,11 @@
 package ru.yandex.practicum.filmorate.dal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.event.FriendshipChangedEvent;
 import ru.yandex.practicum.filmorate.model.user.User;
 
 import java.util.List;
@@ -30,6 +32,9 @@ public class FriendshipRepository {
     private static final String CHECK_FRIENDSHIP_QUERY =
             "SELECT COUNT(*) FROM friendship WHERE user_id = ? AND friend_id = ? AND status = 'CONFIRMED'";
 
+    private static final String GET_ALL_EDGES_QUERY =
+            "SELECT user_id, friend_id FROM friendship ORDER BY user_id, friend_id";
+
     private static final String CREATE_REVERSE_FRIENDSHIP =
             "INSERT INTO friendship (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED') " +
                     "ON CONFLICT (user_id, friend_id) DO UPDATE SET status = 'CONFIRMED'";
@@ -37,38 +42,57 @@ public class FriendshipRepository {
 
     private final JdbcTemplate jdbc;
     private final UserRowMapper userRowMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FriendshipRepository(JdbcTemplate jdbc, UserRowMapper userRowMapper) {
+    public FriendshipRepository(JdbcTemplate jdbc, UserRowMapper userRowMapper,
+                                ApplicationEventPublisher eventPublisher) {
         this.jdbc = jdbc;
         this.userRowMapper = userRowMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     // Остальные методы остаются без изменений
     public void addFriend(long userId, long friendId) {
         jdbc.update(ADD_FRIEND_QUERY, userId, friendId);
         log.debug("Added CONFIRMED friendship from {} to {}", userId, friendId);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, true));
     }
 
-    // Упрощаем confirmFriend (по сути дублирует addFriend)
+    // Упрощаем confirmFriend (по сути дублирует addFriend).
+    // Событие - как при добавлении: граф добавит ребро, если его ещё нет, а кэши подсказок сбросятся
     public void confirmFriend(long userId, long friendId) {
-        jdbc.update(CONFIRM_FRIEND_QUERY, userId, friendId);
+        if (jdbc.update(CONFIRM_FRIEND_QUERY, userId, friendId) > 0) {
+            log.debug("Confirmed friendship from {} to {}", userId, friendId);
+            eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, true));
+        }
     }
 
     public void removeFriend(long userId, long friendId) {
-        jdbc.update(REMOVE_FRIEND_QUERY, userId, friendId);
+        if (jdbc.update(REMOVE_FRIEND_QUERY, userId, friendId) > 0) {
+            eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, false));
+        }
+    }
+
+    /**
+     * Обходит все рёбра дружбы в порядке (user_id, friend_id) без материализации списка.
+     */
+    public void forEachFriendship(EdgeConsumer consumer) {
+        jdbc.query(GET_ALL_EDGES_QUERY, rs -> {
+            consumer.accept(rs.getLong(1), rs.getLong(2));
+        });
     }
 
     public List<User> getFriends(long userId) {
         log.debug("Getting friends for user {}", userId);
-        return jdbc.query(GET_FRIENDS_QUERY, userRowMapper, userId);
+        return jdbc.query(GET_FRIENDS_QUERY, userRowMapper.forQuery(GET_FRIENDS_QUERY), userId);
     }
 
     public List<User> getPendingRequests(long userId) {
-        return jdbc.query(GET_PENDING_REQUESTS_QUERY, userRowMapper, userId);
+        return jdbc.query(GET_PENDING_REQUESTS_QUERY, userRowMapper.forQuery(GET_PENDING_REQUESTS_QUERY), userId);
     }
 
     public List<User> getCommonFriends(long userId, long otherId) {
-        return jdbc.query(GET_COMMON_FRIENDS_QUERY, userRowMapper, userId, otherId);
+        return jdbc.query(GET_COMMON_FRIENDS_QUERY, userRowMapper.forQuery(GET_COMMON_FRIENDS_QUERY), userId, otherId);
     }
 
     public boolean friendshipExists(long userId, long friendId) {
@@ -80,4 +104,9 @@ public class FriendshipRepository {
         );
         return count != null && count > 0;
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(long userId, long friendId);
+    }
+}
@@ -0,0 +1,335 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Очередь лайков для режима write-behind: мутации копятся в памяти, повторы и взаимно
+ * отменяющиеся пары схлопываются, а в БД всё уходит пачкой через batchUpdate
+ * по достижении batch-size или по таймеру.
+ * <p>
+ * Останавливается как {@link SmartLifecycle} в фазе {@link #PHASE}: после веб-сервера (новых лайков уже нет),
+ * но до уничтожения бинов, поэтому последний сброс попадает в снимок {@code FilmLikerStore}, который
+ * пишется в его {@code @PreDestroy}.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindBuffer implements SmartLifecycle {
+    // Меньше фаз веб-сервера: стартует раньше него, останавливается позже
+    public static final int PHASE = 0;
+
+    // Время лайков берётся с часов БД один раз на пачку и идёт и в строки, и в события
+    private static final String CURRENT_TIMESTAMP_QUERY = "SELECT LOCALTIMESTAMP";
+    private static final String INSERT_LIKE_IF_ABSENT_QUERY =
+            "INSERT INTO film_likes (film_id, user_id, liked_at) SELECT ?, ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+    private static final String DELETE_LIKE_QUERY =
+            "SELECT liked_at FROM OLD TABLE (DELETE FROM film_likes WHERE film_id = ? AND user_id = ?)";
+    private static final String ADJUST_LIKE_COUNT_QUERY =
+            "UPDATE films SET like_count = like_count + ? WHERE film_id = ?";
+
+    public enum Durability {
+        ACK_AFTER_FLUSH,
+        ACK_ON_ENQUEUE
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final Durability durability;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long ackTimeoutMs;
+
+    private final Object lock = new Object();
+    // Последнее желаемое состояние для пары (film_id, user_id): лайк + дизлайк дают одну запись
+    private Map<LikeKey, Pending> pending = new LinkedHashMap<>();
+    // Выставляется под lock: всё, что попало в очередь до остановки, уходит последним сбросом в stop()
+    private boolean stopped;
+    private ScheduledExecutorService flusher;
+
+    private final Timer flushTimer = Metrics.timer("filmorate.likes.write_behind.flush");
+    private final Counter flushedMutations = Metrics.counter("filmorate.likes.write_behind.flushed");
+    private final Counter collapsedMutations = Metrics.counter("filmorate.likes.write_behind.collapsed");
+
+    public LikeWriteBehindBuffer(JdbcTemplate jdbc,
+                                 TransactionTemplate transactionTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                 @Value("${filmorate.likes.write-behind.durability:ACK_AFTER_FLUSH}")
+                                 Durability durability,
+                                 @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                                 @Value("${filmorate.likes.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+                                 @Value("${filmorate.likes.write-behind.ack-timeout-ms:5000}") long ackTimeoutMs) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.ackTimeoutMs = ackTimeoutMs;
+        Metrics.gauge("filmorate.likes.write_behind.queue_depth", this, LikeWriteBehindBuffer::getQueueDepth);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Like write-behind enabled: durability={}, batchSize={}, flushIntervalMs={}",
+                durability, batchSize, flushIntervalMs);
+    }
+
+    @Override
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        synchronized (lock) {
+            stopped = true;
+        }
+        // Последний сброс - только после того, как сброс во флашере закончился: параллельно с ним
+        // две пачки писали бы одни и те же таблицы в двух транзакциях
+        flusher.shutdown();
+        try {
+            while (!flusher.awaitTermination(ackTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Like write-behind flusher is still writing a batch, waiting before the final flush");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the like write-behind flusher, {} mutations left unflushed",
+                    getQueueDepth());
+            return;
+        }
+        flushQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        synchronized (lock) {
+            return flusher != null && !stopped;
+        }
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * В режиме ACK_AFTER_FLUSH ждёт записи в БД не дольше ack-timeout-ms. Внутри транзакции такой вызов
+     * отклоняется: она держит соединение из пула (и после коммита - до завершения), и при нескольких
+     * одновременных лайках сбросу его не хватит.
+     */
+    public void enqueue(long filmId, long userId, boolean liked) {
+        boolean awaitFlush = durability == Durability.ACK_AFTER_FLUSH;
+        if (awaitFlush && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Like write-behind with ACK_AFTER_FLUSH cannot wait for the flush "
+                    + "inside a transaction");
+        }
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        boolean full;
+        synchronized (lock) {
+            if (stopped) {
+                throw new InternalServerException("Like write-behind buffer is stopped");
+            }
+            Pending previous = pending.get(new LikeKey(filmId, userId));
+            if (previous != null) {
+                collapsedMutations.increment();
+                previous.liked = liked;
+                previous.acks.add(ack);
+            } else {
+                Pending mutation = new Pending(liked);
+                mutation.acks.add(ack);
+                pending.put(new LikeKey(filmId, userId), mutation);
+            }
+            full = pending.size() >= batchSize;
+        }
+
+        if (full) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Остановка началась после постановки в очередь: её заберёт последний сброс в stop()
+                log.debug("Like write-behind flusher is shut down, leaving the batch to the final flush");
+            }
+        }
+        if (awaitFlush) {
+            awaitAck(ack);
+        }
+    }
+
+    // По таймауту мутация остаётся в очереди и может записаться позже, но вызывающий получает ошибку
+    private void awaitAck(CompletableFuture<Void> ack) {
+        try {
+            ack.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new InternalServerException("Timed out after " + ackTimeoutMs
+                    + " ms waiting for the like to be persisted");
+        } catch (ExecutionException e) {
+            throw new InternalServerException("Failed to persist like: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Interrupted while waiting for the like to be persisted");
+        }
+    }
+
+    public void flush() {
+        Map<LikeKey, Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> write(batch)));
+            flushedMutations.increment(batch.size());
+            batch.values().forEach(mutation -> mutation.acks.forEach(ack -> ack.complete(null)));
+        } catch (RuntimeException e) {
+            log.error("Like batch of {} mutations failed, retrying one by one", batch.size(), e);
+            batch.forEach(this::writeSingle);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Like write-behind flush failed", e);
+        }
+    }
+
+    private void write(Map<LikeKey, Pending> batch) {
+        List<LikeKey> likes = new ArrayList<>();
+        List<LikeKey> unlikes = new ArrayList<>();
+        batch.forEach((key, mutation) -> (mutation.liked ? likes : unlikes).add(key));
+
+        Timestamp likedAt = jdbc.queryForObject(CURRENT_TIMESTAMP_QUERY, Timestamp.class);
+        int[] inserted = jdbc.batchUpdate(INSERT_LIKE_IF_ABSENT_QUERY, likes.stream()
+                .map(key -> new Object[]{key.filmId(), key.userId(), likedAt, key.filmId(), key.userId()})
+                .toList());
+        List<Instant> insertedAt = new ArrayList<>(likes.size());
+        for (int rows : inserted) {
+            insertedAt.add(rows > 0 ? likedAt.toInstant() : null);
+        }
+        List<Instant> deletedAt = deleteLikes(unlikes);
+
+        Map<Long, Integer> deltas = new HashMap<>();
+        List<FilmLikeEvent> events = new ArrayList<>();
+        collectChanges(likes, insertedAt, true, deltas, events);
+        collectChanges(unlikes, deletedAt, false, deltas, events);
+
+        jdbc.batchUpdate(ADJUST_LIKE_COUNT_QUERY, deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList());
+        if (!events.isEmpty()) {
+            jdbc.queryForObject(FilmRepository.BUMP_LIKES_VERSION_QUERY, Long.class);
+        }
+        events.forEach(eventPublisher::publishEvent);
+        log.debug("Flushed {} like mutations, {} rows changed", batch.size(), events.size());
+    }
+
+    private void writeSingle(LikeKey key, Pending mutation) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(Map.of(key, mutation)));
+            mutation.acks.forEach(ack -> ack.complete(null));
+        } catch (RuntimeException e) {
+            log.warn("Dropping like mutation {} -> {}: {}", key, mutation.liked, e.getMessage());
+            mutation.acks.forEach(ack -> ack.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Снимает лайки по одному DELETE ... OLD TABLE на одном подготовленном запросе: batchUpdate не вернул бы
+     * время удалённых лайков, а без него тренды не вычтут лайк из его корзины. Для отсутствовавших лайков - null.
+     */
+    private List<Instant> deleteLikes(List<LikeKey> unlikes) {
+        if (unlikes.isEmpty()) {
+            return List.of();
+        }
+        return jdbc.execute((ConnectionCallback<List<Instant>>) connection -> {
+            List<Instant> deletedAt = new ArrayList<>(unlikes.size());
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_LIKE_QUERY)) {
+                for (LikeKey key : unlikes) {
+                    statement.setLong(1, key.filmId());
+                    statement.setLong(2, key.userId());
+                    try (ResultSet rs = statement.executeQuery()) {
+                        deletedAt.add(rs.next() ? rs.getTimestamp(1).toInstant() : null);
+                    }
+                }
+            }
+            return deletedAt;
+        });
+    }
+
+    // changedAt[i] - время лайка, если строка keys[i] действительно изменилась, иначе null
+    private static void collectChanges(List<LikeKey> keys, List<Instant> changedAt, boolean added,
+                                       Map<Long, Integer> deltas, List<FilmLikeEvent> events) {
+        for (int i = 0; i < keys.size(); i++) {
+            Instant likedAt = changedAt.get(i);
+            if (likedAt != null) {
+                LikeKey key = keys.get(i);
+                deltas.merge(key.filmId(), added ? 1 : -1, Integer::sum);
+                events.add(new FilmLikeEvent(key.filmId(), key.userId(), added, likedAt));
+            }
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    private static final class Pending {
+        private boolean liked;
+        private final List<CompletableFuture<Void>> acks = new ArrayList<>(1);
+
+        private Pending(boolean liked) {
+            this.liked = liked;
+        }
+    }
+}
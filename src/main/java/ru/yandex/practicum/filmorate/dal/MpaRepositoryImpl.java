@@ -19,13 +19,8 @@ public class MpaRepositoryImpl extends BaseRepository<MpaRating> implements MpaR
             "SELECT * FROM mpa_rating ORDER BY mpa_id";
 
     public MpaRepositoryImpl(JdbcTemplate jdbc) {
-        super(jdbc, (rs, rowNum) -> {
-            MpaRating mpa = new MpaRating();
-            mpa.setId(rs.getInt("mpa_id"));
-            mpa.setName(rs.getString("mpa_name"));
-            mpa.setDescription(rs.getString("description"));
-            return mpa;
-        });
+        super(jdbc, (rs, rowNum) -> new MpaRating(rs.getInt("mpa_id"), rs.getString("mpa_name"),
+                rs.getString("description")));
     }
 
     @Override
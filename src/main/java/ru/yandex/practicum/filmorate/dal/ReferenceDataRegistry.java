@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.MpaRating;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Справочники жанров и рейтингов MPA в памяти: загружаются при старте в массивы, индексированные по id,
+ * и раздаются как общие экземпляры, поэтому /genres, /mpa и проверка фильмов не ходят в БД.
+ * Экземпляры неизменяемы, списки только для чтения. После изменения справочных строк в БД
+ * справочники перечитываются через POST /actuator/referencedata ({@link #refresh()}).
+ */
+@Slf4j
+@Component
+public class ReferenceDataRegistry {
+    private final GenreRepository genreRepository;
+    private final MpaRepository mpaRepository;
+    private final FilmCache filmCache;
+
+    private volatile Snapshot snapshot = new Snapshot(new Genre[0], List.of(), new MpaRating[0], List.of());
+
+    public ReferenceDataRegistry(GenreRepository genreRepository, MpaRepository mpaRepository, FilmCache filmCache) {
+        this.genreRepository = genreRepository;
+        this.mpaRepository = mpaRepository;
+        this.filmCache = filmCache;
+    }
+
+    @PostConstruct
+    public void refresh() {
+        List<Genre> genres = List.copyOf(genreRepository.findAll());
+        List<MpaRating> mpaRatings = List.copyOf(mpaRepository.findAll());
+
+        Genre[] genresById = new Genre[genres.stream().mapToInt(Genre::getId).max().orElse(0) + 1];
+        genres.forEach(genre -> genresById[genre.getId()] = genre);
+        MpaRating[] mpaById = new MpaRating[mpaRatings.stream().mapToInt(MpaRating::getId).max().orElse(0) + 1];
+        mpaRatings.forEach(mpa -> mpaById[mpa.getId()] = mpa);
+
+        snapshot = new Snapshot(genresById, genres, mpaById, mpaRatings);
+        // В кэше лежат фильмы со старыми экземплярами справочников
+        filmCache.invalidateAll();
+        log.info("Reference data loaded: {} genres, {} MPA ratings", genres.size(), mpaRatings.size());
+    }
+
+    public List<Genre> getGenres() {
+        return snapshot.genres();
+    }
+
+    public Optional<Genre> findGenre(int genreId) {
+        return Optional.ofNullable(lookup(snapshot.genresById(), genreId));
+    }
+
+    /**
+     * Общий экземпляр жанра; если id нет в справочнике (добавлен в БД без refresh), создаёт новый по данным строки.
+     */
+    public Genre genre(int genreId, String name) {
+        Genre genre = lookup(snapshot.genresById(), genreId);
+        return genre != null ? genre : new Genre(genreId, name);
+    }
+
+    public Set<Integer> findMissingGenreIds(Set<Integer> genreIds) {
+        Genre[] genresById = snapshot.genresById();
+        Set<Integer> missing = new TreeSet<>();
+        for (Integer genreId : genreIds) {
+            if (lookup(genresById, genreId) == null) {
+                missing.add(genreId);
+            }
+        }
+        return missing;
+    }
+
+    public List<MpaRating> getMpaRatings() {
+        return snapshot.mpaRatings();
+    }
+
+    public Optional<MpaRating> findMpa(int mpaId) {
+        return Optional.ofNullable(lookup(snapshot.mpaById(), mpaId));
+    }
+
+    /**
+     * Общий экземпляр рейтинга; для id вне справочника собирается из данных строки.
+     */
+    public MpaRating mpa(int mpaId, String name, String description) {
+        MpaRating mpa = lookup(snapshot.mpaById(), mpaId);
+        return mpa != null ? mpa : new MpaRating(mpaId, name, description);
+    }
+
+    public boolean mpaExists(int mpaId) {
+        return lookup(snapshot.mpaById(), mpaId) != null;
+    }
+
+    private static <T> T lookup(T[] byId, int id) {
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    private record Snapshot(Genre[] genresById, List<Genre> genres, MpaRating[] mpaById, List<MpaRating> mpaRatings) {
+    }
+}
@@ -1,18 +1,32 @@
 package ru.yandex.practicum.filmorate.dal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.event.UserSavedEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
@@ -20,15 +34,25 @@ import java.util.Optional;
 public class UserRepository extends BaseRepository implements UserStorage {
     // SQL Queries
     private static final String FIND_ALL_QUERY = "SELECT * FROM users";
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
     private static final String FIND_BY_EMAIL_QUERY = "SELECT * FROM users WHERE email = ?";
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = ?";
     private static final String INSERT_QUERY =
             "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    private static final String FIND_BY_IDS_QUERY = "SELECT * FROM users WHERE user_id IN (%s)";
+    private static final String FIND_EXISTING_EMAILS_QUERY = "SELECT email FROM users WHERE email IN (%s)";
+    private static final String EXISTS_BY_ID_QUERY = "SELECT EXISTS(SELECT 1 FROM users WHERE user_id = ?)";
+    private static final String EXISTS_BY_EMAIL_QUERY = "SELECT EXISTS(SELECT 1 FROM users WHERE email = ?)";
+    private static final String COUNT_QUERY = "SELECT COUNT(*) FROM users";
+    private static final String FIND_ALL_KEYS_QUERY = "SELECT user_id, email FROM users";
     private static final String UPDATE_QUERY =
             "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE user_id = ?";
 
-    public UserRepository(JdbcTemplate jdbc, RowMapper<User> mapper) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserRepository(JdbcTemplate jdbc, RowMapper<User> mapper, ApplicationEventPublisher eventPublisher) {
         super(jdbc, mapper);
+        this.eventPublisher = eventPublisher;
     }
 
     // Query methods
@@ -37,6 +61,10 @@ public class UserRepository extends BaseRepository implements UserStorage {
         return findAll(FIND_ALL_QUERY);
     }
 
+    public List<User> getUsersPage(long afterId, int limit) {
+        return findAll(FIND_PAGE_QUERY, afterId, limit);
+    }
+
     public Optional<User> findByEmail(String email) {
         return findById(FIND_BY_EMAIL_QUERY, email);
     }
@@ -50,6 +78,42 @@ public class UserRepository extends BaseRepository implements UserStorage {
         }
     }
 
+    /**
+     * Пользователи по списку id в порядке этого списка; отсутствующие id пропускаются.
+     */
+    public List<User> getUsersByIds(List<Long> ids) {
+        Map<Long, User> users = new HashMap<>();
+        RowMapper<User> rowMapper = mapperFor(FIND_BY_IDS_QUERY);
+        queryInBatches(FIND_BY_IDS_QUERY, ids, rs -> {
+            User user = rowMapper.mapRow(rs, users.size());
+            users.put(user.getId(), user);
+        });
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Проверки существования без чтения и маппинга строки
+    public boolean existsById(long userId) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(EXISTS_BY_ID_QUERY, Boolean.class, userId));
+    }
+
+    public boolean existsByEmail(String email) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(EXISTS_BY_EMAIL_QUERY, Boolean.class, email));
+    }
+
+    public long countUsers() {
+        Long count = jdbc.queryForObject(COUNT_QUERY, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    public void forEachUserKey(BiConsumer<Long, String> consumer) {
+        jdbc.query(FIND_ALL_KEYS_QUERY, rs -> {
+            consumer.accept(rs.getLong(1), rs.getString(2));
+        });
+    }
+
     // Modification methods
     @Override
     public User addUser(User user) {
@@ -65,9 +129,48 @@ public class UserRepository extends BaseRepository implements UserStorage {
         user.setId(userId);
 
         log.debug("Saved user with id: {}", userId);
+        eventPublisher.publishEvent(new UserSavedEvent(userId, user.getEmail()));
         return user;
     }
 
+    /**
+     * Пакетная вставка для импорта: одна JDBC-пачка, id забираются из сгенерированных ключей.
+     */
+    public void addUsers(List<User> users) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_QUERY, new String[]{"user_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setObject(4, user.getBirthday());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            user.setId(((Number) keyList.get(i).values().iterator().next()).longValue());
+            eventPublisher.publishEvent(new UserSavedEvent(user.getId(), user.getEmail()));
+        }
+        log.debug("Saved {} users in one batch", users.size());
+    }
+
+    // Какие из адресов уже заняты - один запрос на пачку вместо findByEmail на каждого
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        queryInBatches(FIND_EXISTING_EMAILS_QUERY, emails, rs -> existing.add(rs.getString(1)));
+        return existing;
+    }
+
     @Override
     public User updateUser(User user) {
         validateUserNotNull(user);
@@ -86,6 +189,7 @@ public class UserRepository extends BaseRepository implements UserStorage {
         }
 
         log.debug("Updated user with id: {}", user.getId());
+        eventPublisher.publishEvent(new UserSavedEvent(user.getId(), user.getEmail()));
         return user;
     }
 
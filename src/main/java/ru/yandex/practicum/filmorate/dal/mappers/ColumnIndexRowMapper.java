@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.dal.mappers;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Маппер, читающий строки по индексам колонок. Индексы ищутся один раз по {@link ResultSetMetaData}
+ * и кэшируются по тексту запроса (см. {@link #forQuery}); отсутствующая колонка получает индекс 0.
+ */
+public abstract class ColumnIndexRowMapper<T> implements RowMapper<T> {
+    public static final int ABSENT = 0;
+
+    private final String[] columns;
+    private final ConcurrentMap<String, int[]> plans = new ConcurrentHashMap<>();
+
+    protected ColumnIndexRowMapper(String... columns) {
+        this.columns = columns;
+    }
+
+    protected abstract T mapRow(ResultSet rs, int[] plan) throws SQLException;
+
+    public RowMapper<T> forQuery(String sql) {
+        return (rs, rowNum) -> {
+            int[] plan = plans.get(sql);
+            if (plan == null) {
+                plan = resolve(rs.getMetaData());
+                plans.putIfAbsent(sql, plan);
+            }
+            return mapRow(rs, plan);
+        };
+    }
+
+    /**
+     * Запасной путь для вызовов без текста запроса: план строится по метаданным на каждой строке.
+     */
+    @Override
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(rs, resolve(rs.getMetaData()));
+    }
+
+    private int[] resolve(ResultSetMetaData metaData) throws SQLException {
+        int[] plan = new int[columns.length];
+        for (int i = metaData.getColumnCount(); i >= 1; i--) {
+            // Идём с конца, чтобы при повторяющихся именах победила первая колонка
+            String label = metaData.getColumnLabel(i);
+            for (int c = 0; c < columns.length; c++) {
+                if (columns[c].equalsIgnoreCase(label)) {
+                    plan[c] = i;
+                }
+            }
+        }
+        return plan;
+    }
+}
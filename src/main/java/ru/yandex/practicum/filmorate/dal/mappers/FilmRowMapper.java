@@ -1,43 +1,47 @@
 package ru.yandex.practicum.filmorate.dal.mappers;
 
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.film.Film;
-import ru.yandex.practicum.filmorate.model.film.MpaRating;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
 
 @Component
-public class FilmRowMapper implements RowMapper<Film> {
+public class FilmRowMapper extends ColumnIndexRowMapper<Film> {
+    private static final int FILM_ID = 0;
+    private static final int NAME = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int RELEASE_DATE = 3;
+    private static final int DURATION = 4;
+    private static final int MPA_ID = 5;
+    private static final int MPA_NAME = 6;
+    private static final int MPA_DESCRIPTION = 7;
+
+    private final ReferenceDataRegistry referenceData;
+
+    public FilmRowMapper(ReferenceDataRegistry referenceData) {
+        super("film_id", "name", "description", "release_date", "duration",
+                "mpa_id", "mpa_name", "mpa_description");
+        this.referenceData = referenceData;
+    }
+
     @Override
-    public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+    protected Film mapRow(ResultSet rs, int[] plan) throws SQLException {
         Film film = new Film();
-        film.setId(rs.getLong("film_id"));
-        film.setName(rs.getString("name"));
-        film.setDescription(rs.getString("description"));
-        film.setReleaseDate(rs.getDate("release_date").toLocalDate());
-        film.setDuration(rs.getInt("duration"));
-        if (hasColumn(rs, "mpa_name")) { // Проверяем наличие столбца
-            String mpaName = rs.getString("mpa_name");
+        film.setId(rs.getLong(plan[FILM_ID]));
+        film.setName(rs.getString(plan[NAME]));
+        film.setDescription(rs.getString(plan[DESCRIPTION]));
+        film.setReleaseDate(rs.getObject(plan[RELEASE_DATE], LocalDate.class));
+        film.setDuration(rs.getInt(plan[DURATION]));
+        if (plan[MPA_NAME] != ABSENT) { // Запрос мог не присоединять mpa_rating
+            String mpaName = rs.getString(plan[MPA_NAME]);
             if (mpaName != null) {
-                MpaRating mpa = new MpaRating();
-                mpa.setId(rs.getInt("mpa_id"));
-                mpa.setName(mpaName);
-                mpa.setDescription(rs.getString("mpa_description"));
-                film.setMpa(mpa);
+                String mpaDescription = plan[MPA_DESCRIPTION] != ABSENT ? rs.getString(plan[MPA_DESCRIPTION]) : null;
+                film.setMpa(referenceData.mpa(rs.getInt(plan[MPA_ID]), mpaName, mpaDescription));
             }
         }
         return film;
     }
-
-    // Вспомогательный метод для проверки наличия столбца
-    private boolean hasColumn(ResultSet rs, String columnName) {
-        try {
-            rs.findColumn(columnName);
-            return true;
-        } catch (SQLException e) {
-            return false;
-        }
-    }
 }
@@ -1,28 +1,35 @@
 package ru.yandex.practicum.filmorate.dal.mappers;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.user.User;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.time.LocalDate;
 
 @Component
 @Slf4j
-public class UserRowMapper implements RowMapper<User> {
+public class UserRowMapper extends ColumnIndexRowMapper<User> {
+    private static final int USER_ID = 0;
+    private static final int EMAIL = 1;
+    private static final int LOGIN = 2;
+    private static final int NAME = 3;
+    private static final int BIRTHDAY = 4;
+
+    public UserRowMapper() {
+        super("user_id", "email", "login", "name", "birthday");
+    }
 
     @Override
-    public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+    protected User mapRow(ResultSet rs, int[] plan) throws SQLException {
         try {
             User user = new User();
-            user.setId(rs.getLong("user_id"));
-            user.setEmail(rs.getString("email"));
-            user.setLogin(rs.getString("login"));
-            user.setName(rs.getString("name"));
-            Timestamp ts = rs.getTimestamp("birthday");
-            user.setBirthday(ts.toLocalDateTime().toLocalDate());
+            user.setId(rs.getLong(plan[USER_ID]));
+            user.setEmail(rs.getString(plan[EMAIL]));
+            user.setLogin(rs.getString(plan[LOGIN]));
+            user.setName(rs.getString(plan[NAME]));
+            user.setBirthday(rs.getObject(plan[BIRTHDAY], LocalDate.class));
 
             return user;
         } catch (SQLException e) {
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Число общих друзей с пользователем userId для пакетного запроса /users/{id}/friends/common.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CommonFriendsCountDto {
+    private final long userId;
+    private final int commonFriends;
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Рекомендация "возможно, вы знакомы": пользователь и число общих друзей с ним.
+ */
+@Getter
+@RequiredArgsConstructor
+public class FriendSuggestionDto {
+    private final UserDto user;
+    private final int mutualFriends;
+}
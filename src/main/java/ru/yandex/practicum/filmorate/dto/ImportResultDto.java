@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Результат импорта одной строки NDJSON: id созданной записи или текст ошибки.
+ */
+@Getter
+@RequiredArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportResultDto {
+    public enum Status {
+        CREATED,
+        FAILED
+    }
+
+    private final long line;
+    private final Status status;
+    private final Long id;
+    private final String error;
+
+    public static ImportResultDto created(long line, long id) {
+        return new ImportResultDto(line, Status.CREATED, id, null);
+    }
+
+    public static ImportResultDto failed(long line, String error) {
+        return new ImportResultDto(line, Status.FAILED, null, error);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ответ на PUT/DELETE /films/{id}/like/{userId}: стоит ли теперь лайк, изменил ли его запрос
+ * (повтор ничего не меняет) и сколько у фильма лайков.
+ */
+@Getter
+@RequiredArgsConstructor
+public class LikeResultDto {
+    private final long filmId;
+    private final long userId;
+    private final boolean liked;
+    private final boolean changed;
+    private final int likeCount;
+}
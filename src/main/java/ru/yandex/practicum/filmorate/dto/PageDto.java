@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.List;
+
+/**
+ * Страница keyset-пагинации: nextCursor равен null, если дальше данных нет.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PageDto<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Предел страницы; запрос без limit получает страницу такого же размера, остальное - по курсору
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public static int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return MAX_LIMIT;
+        }
+        if (limit <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Публикуется репозиторием после добавления или изменения фильма (включая его жанры).
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FilmChangedEvent {
+    private final long filmId;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Публикуется репозиторием после удаления фильма; его лайки к этому моменту уже сняты
+ * отдельными {@link FilmLikeEvent}.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FilmDeletedEvent {
+    private final long filmId;
+}
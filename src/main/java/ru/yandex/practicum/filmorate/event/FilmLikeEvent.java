@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Публикуется репозиторием после того, как лайк фактически добавлен или удалён в БД.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FilmLikeEvent {
+    private final long filmId;
+    private final long userId;
+    private final boolean added;
+    // Время исходного лайка: и при добавлении, и при удалении (по нему тренды находят корзину)
+    private final Instant likedAt;
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Публикуется репозиторием после того, как строка дружбы фактически добавлена, подтверждена или удалена в БД.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FriendshipChangedEvent {
+    private final long userId;
+    private final long friendId;
+    private final boolean added;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Публикуется репозиторием после вставки или обновления пользователя.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class UserSavedEvent {
+    private final long userId;
+    private final String email;
+}
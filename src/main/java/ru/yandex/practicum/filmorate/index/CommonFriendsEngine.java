@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Общие друзья по графу {@link FriendGraph}. Пара пользователей пересекается через {@link SortedIntSets};
+ * в пакетном режиме (один пользователь против многих) друзья пользователя с большим числом друзей
+ * один раз раскладываются в битовую карту, и каждый второй список проверяется по ней за O(его длины).
+ */
+@Component
+public class CommonFriendsEngine {
+    private final FriendGraph friendGraph;
+    private final int bitmapThreshold;
+
+    public CommonFriendsEngine(FriendGraph friendGraph,
+                               @Value("${filmorate.friends.common.bitmap-threshold:1024}") int bitmapThreshold) {
+        this.friendGraph = friendGraph;
+        this.bitmapThreshold = bitmapThreshold;
+    }
+
+    public List<Long> getCommonFriendIds(long userId, long otherId) {
+        return FriendGraph.toIds(SortedIntSets.intersect(
+                friendGraph.neighbours(userId), friendGraph.neighbours(otherId)));
+    }
+
+    /**
+     * Число общих друзей userId с каждым из otherIds, в порядке otherIds.
+     */
+    public Map<Long, Integer> countCommonFriends(long userId, List<Long> otherIds) {
+        IntSlice friends = friendGraph.neighbours(userId);
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        if (friends.size() >= bitmapThreshold && otherIds.size() > 1) {
+            long[] bitmap = toBitmap(friends);
+            for (Long otherId : otherIds) {
+                counts.put(otherId, countInBitmap(bitmap, friendGraph.neighbours(otherId)));
+            }
+        } else {
+            for (Long otherId : otherIds) {
+                counts.put(otherId, SortedIntSets.intersectionSize(friends, friendGraph.neighbours(otherId)));
+            }
+        }
+        return counts;
+    }
+
+    private static long[] toBitmap(IntSlice sortedIds) {
+        long[] words = new long[(sortedIds.get(sortedIds.size() - 1) >>> 6) + 1];
+        for (int i = 0; i < sortedIds.size(); i++) {
+            int id = sortedIds.get(i);
+            words[id >>> 6] |= 1L << id;
+        }
+        return words;
+    }
+
+    private static int countInBitmap(long[] bitmap, IntSlice ids) {
+        int count = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            int word = id >>> 6;
+            if (word >= bitmap.length) {
+                // Список отсортирован: дальше только id за пределами карты
+                break;
+            }
+            if ((bitmap[word] & (1L << id)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,381 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Неизменяемое сжатое множество неотрицательных int в духе Roaring: значения делятся на блоки по старшим
+ * 16 битам, разреженный блок хранится отсортированным char[] (до 4096 значений), плотный - битовой картой
+ * на 65536 бит. Изменения возвращают новый экземпляр, копируя только затронутый блок.
+ */
+final class CompactBitmap {
+    static final CompactBitmap EMPTY = new CompactBitmap(new char[0], new Object[0], 0);
+
+    // Больше значений в блоке выгоднее держать битовой картой: 4096 * 2 байта = 1024 * 8 байт
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final char[] keys;
+    // char[] - разреженный блок, long[] - плотный
+    private final Object[] blocks;
+    private final int cardinality;
+
+    private CompactBitmap(char[] keys, Object[] blocks, int cardinality) {
+        this.keys = keys;
+        this.blocks = blocks;
+        this.cardinality = cardinality;
+    }
+
+    static CompactBitmap of(int[] sortedIds) {
+        return of(sortedIds, 0, sortedIds.length);
+    }
+
+    /**
+     * Множество из отсортированного по возрастанию фрагмента [from, to) без повторов.
+     */
+    static CompactBitmap of(int[] sortedIds, int from, int to) {
+        if (from == to) {
+            return EMPTY;
+        }
+        char[] keys = new char[Math.min(to - from, (sortedIds[to - 1] >>> 16) + 1)];
+        Object[] blocks = new Object[keys.length];
+        int count = 0;
+        int start = from;
+        while (start < to) {
+            int high = sortedIds[start] >>> 16;
+            int end = start;
+            while (end < to && sortedIds[end] >>> 16 == high) {
+                end++;
+            }
+            char[] low = new char[end - start];
+            for (int i = start; i < end; i++) {
+                low[i - start] = (char) sortedIds[i];
+            }
+            keys[count] = (char) high;
+            blocks[count++] = low.length > ARRAY_MAX ? toBitmap(low, low.length) : low;
+            start = end;
+        }
+        return new CompactBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(blocks, count), to - from);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int id) {
+        int at = Arrays.binarySearch(keys, (char) (id >>> 16));
+        return id >= 0 && at >= 0 && blockContains(blocks[at], (char) id);
+    }
+
+    CompactBitmap with(int id) {
+        char high = (char) (id >>> 16);
+        char low = (char) id;
+        int at = Arrays.binarySearch(keys, high);
+        if (at < 0) {
+            int insertAt = -at - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Object[] newBlocks = new Object[blocks.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(blocks, 0, newBlocks, 0, insertAt);
+            newKeys[insertAt] = high;
+            newBlocks[insertAt] = new char[]{low};
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(blocks, insertAt, newBlocks, insertAt + 1, blocks.length - insertAt);
+            return new CompactBitmap(newKeys, newBlocks, cardinality + 1);
+        }
+        Object block = blocks[at];
+        if (blockContains(block, low)) {
+            return this;
+        }
+        Object updated;
+        if (block instanceof long[] words) {
+            long[] copy = words.clone();
+            copy[low >>> 6] |= 1L << low;
+            updated = copy;
+        } else {
+            char[] values = (char[]) block;
+            int insertAt = -Arrays.binarySearch(values, low) - 1;
+            char[] copy = new char[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, insertAt);
+            copy[insertAt] = low;
+            System.arraycopy(values, insertAt, copy, insertAt + 1, values.length - insertAt);
+            updated = copy.length > ARRAY_MAX ? toBitmap(copy, copy.length) : copy;
+        }
+        return replaceBlock(at, updated, cardinality + 1);
+    }
+
+    CompactBitmap without(int id) {
+        char low = (char) id;
+        int at = Arrays.binarySearch(keys, (char) (id >>> 16));
+        if (id < 0 || at < 0 || !blockContains(blocks[at], low)) {
+            return this;
+        }
+        Object block = blocks[at];
+        int remaining = blockCardinality(block) - 1;
+        if (remaining == 0) {
+            char[] newKeys = new char[keys.length - 1];
+            Object[] newBlocks = new Object[blocks.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(blocks, 0, newBlocks, 0, at);
+            System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+            System.arraycopy(blocks, at + 1, newBlocks, at, blocks.length - at - 1);
+            return new CompactBitmap(newKeys, newBlocks, cardinality - 1);
+        }
+        Object updated;
+        if (block instanceof long[] words) {
+            long[] copy = words.clone();
+            copy[low >>> 6] &= ~(1L << low);
+            updated = remaining <= ARRAY_MAX ? toArray(copy, remaining) : copy;
+        } else {
+            char[] values = (char[]) block;
+            int removeAt = Arrays.binarySearch(values, low);
+            char[] copy = new char[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, removeAt);
+            System.arraycopy(values, removeAt + 1, copy, removeAt, values.length - removeAt - 1);
+            updated = copy;
+        }
+        return replaceBlock(at, updated, cardinality - 1);
+    }
+
+    /**
+     * Размер пересечения без построения самого пересечения: блоки сопоставляются по старшим битам.
+     */
+    int intersectionSize(CompactBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += blockIntersectionSize(blocks[i++], other.blocks[j++]);
+            }
+        }
+        return count;
+    }
+
+    void forEach(IntConsumer consumer) {
+        for (int k = 0; k < keys.length; k++) {
+            int high = keys[k] << 16;
+            if (blocks[k] instanceof long[] words) {
+                for (int w = 0; w < words.length; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (char low : (char[]) blocks[k]) {
+                    consumer.accept(high | low);
+                }
+            }
+        }
+    }
+
+    /**
+     * Каждое step-е значение по возрастанию начиная с наименьшего, не больше max штук; возвращает их число.
+     * Разреженные блоки пропускаются по индексу, плотные - по словам через bitCount.
+     */
+    int forEachSampled(int step, int max, IntConsumer consumer) {
+        int emitted = 0;
+        int skip = 0;
+        for (int k = 0; k < keys.length && emitted < max; k++) {
+            int high = keys[k] << 16;
+            if (blocks[k] instanceof long[] words) {
+                for (int w = 0; w < words.length && emitted < max; w++) {
+                    long word = words[w];
+                    int count = Long.bitCount(word);
+                    while (skip < count && emitted < max) {
+                        for (int s = 0; s < skip; s++) {
+                            word &= word - 1;
+                        }
+                        consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        emitted++;
+                        word &= word - 1;
+                        count -= skip + 1;
+                        skip = step - 1;
+                    }
+                    skip -= count;
+                }
+            } else {
+                char[] values = (char[]) blocks[k];
+                int i = skip;
+                for (; i < values.length && emitted < max; i += step) {
+                    consumer.accept(high | values[i]);
+                    emitted++;
+                }
+                skip = i - values.length;
+            }
+        }
+        return emitted;
+    }
+
+    int[] toArray() {
+        int[] ids = new int[cardinality];
+        int[] size = {0};
+        forEach(id -> ids[size[0]++] = id);
+        return ids;
+    }
+
+    long memoryFootprintBytes() {
+        // Заголовки объекта и двух массивов верхнего уровня плюс содержимое каждого блока с заголовком
+        long bytes = 16 + 16 + 2L * keys.length + 16 + 4L * blocks.length;
+        for (Object block : blocks) {
+            bytes += 16 + (block instanceof long[] ? 8L * BITMAP_WORDS : 2L * ((char[]) block).length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Блоки как есть: старшие биты, число значений и либо младшие биты, либо слова битовой карты.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(keys.length);
+        for (int k = 0; k < keys.length; k++) {
+            out.writeChar(keys[k]);
+            out.writeInt(blockCardinality(blocks[k]));
+            if (blocks[k] instanceof long[] words) {
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            } else {
+                for (char low : (char[]) blocks[k]) {
+                    out.writeChar(low);
+                }
+            }
+        }
+    }
+
+    static CompactBitmap readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count == 0) {
+            return EMPTY;
+        }
+        if (count < 0 || count > 1 << 16) {
+            throw new IOException("Corrupted bitmap block count " + count);
+        }
+        char[] keys = new char[count];
+        Object[] blocks = new Object[count];
+        int cardinality = 0;
+        for (int k = 0; k < count; k++) {
+            keys[k] = in.readChar();
+            int size = in.readInt();
+            if (k > 0 && keys[k] <= keys[k - 1] || size <= 0 || size > 1 << 16) {
+                throw new IOException("Corrupted bitmap block " + k);
+            }
+            if (size > ARRAY_MAX) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = in.readLong();
+                }
+                blocks[k] = words;
+            } else {
+                char[] values = new char[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readChar();
+                }
+                blocks[k] = values;
+            }
+            cardinality += size;
+        }
+        return new CompactBitmap(keys, blocks, cardinality);
+    }
+
+    private CompactBitmap replaceBlock(int at, Object block, int newCardinality) {
+        Object[] newBlocks = blocks.clone();
+        newBlocks[at] = block;
+        return new CompactBitmap(keys, newBlocks, newCardinality);
+    }
+
+    private static boolean blockContains(Object block, char low) {
+        if (block instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) block, low) >= 0;
+    }
+
+    private static int blockCardinality(Object block) {
+        if (block instanceof long[] words) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+        return ((char[]) block).length;
+    }
+
+    private static int blockIntersectionSize(Object block, Object other) {
+        if (block instanceof long[] words && other instanceof long[] otherWords) {
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(words[w] & otherWords[w]);
+            }
+            return count;
+        }
+        if (block instanceof long[] words) {
+            return countInBitmap(words, (char[]) other);
+        }
+        if (other instanceof long[] otherWords) {
+            return countInBitmap(otherWords, (char[]) block);
+        }
+        char[] values = (char[]) block;
+        char[] otherValues = (char[]) other;
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < values.length && j < otherValues.length) {
+            if (values[i] < otherValues[j]) {
+                i++;
+            } else if (values[i] > otherValues[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int countInBitmap(long[] words, char[] values) {
+        int count = 0;
+        for (char low : values) {
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long[] toBitmap(char[] values, int size) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < size; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    private static char[] toArray(long[] words, int size) {
+        char[] values = new char[size];
+        int count = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[count++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
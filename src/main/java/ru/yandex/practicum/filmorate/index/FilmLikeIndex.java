@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Лайки в памяти в обе стороны: у пользователя - сжатое множество лайкнутых фильмов ({@link CompactBitmap}),
+ * у фильма - множество лайкнувших из {@link FilmLikerStore}. Сторона пользователей строится обращением
+ * хранилища при старте и обновляется по {@link FilmLikeEvent}; каждое изменение заменяет значение целиком,
+ * поэтому чтение идёт без блокировок.
+ */
+@Slf4j
+@Component
+public class FilmLikeIndex {
+    private final FilmLikerStore likerStore;
+    private final ConcurrentMap<Integer, CompactBitmap> likedFilms = new ConcurrentHashMap<>();
+
+    public FilmLikeIndex(FilmLikerStore likerStore) {
+        this.likerStore = likerStore;
+        Metrics.gauge("filmorate.likes.index.users", likedFilms, Map::size);
+    }
+
+    @PostConstruct
+    public void load() {
+        GroupedIds byUser = new GroupedIds();
+        // Фильмы идут по возрастанию id, так что списки фильмов пользователей заполняются уже отсортированными
+        likerStore.forEachFilm((filmId, users) -> users.forEach(userId -> byUser.add(userId, filmId)));
+        Map<Integer, CompactBitmap> loaded = new HashMap<>();
+        byUser.forEach((userId, films, size) -> loaded.put(userId, CompactBitmap.of(films, 0, size)));
+
+        likedFilms.clear();
+        likedFilms.putAll(loaded);
+        log.info("Like index loaded: {} users, {} bytes (film likers: {} bytes)",
+                likedFilms.size(), memoryFootprintBytes(), likerStore.memoryFootprintBytes());
+    }
+
+    /**
+     * Перечитывает film_likes в хранилище лайкнувших и заново строит сторону пользователей.
+     */
+    public void rebuild() {
+        likerStore.rebuild();
+        load();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        int filmId = Math.toIntExact(event.getFilmId());
+        int userId = Math.toIntExact(event.getUserId());
+        apply(userId, filmId, event.isAdded());
+    }
+
+    CompactBitmap likedFilms(int userId) {
+        return likedFilms.getOrDefault(userId, CompactBitmap.EMPTY);
+    }
+
+    CompactBitmap likers(int filmId) {
+        return likerStore.likers(filmId);
+    }
+
+    /**
+     * Фильмы хотя бы с одним лайком по возрастанию id, вместе с лайкнувшими.
+     */
+    void forEachFilm(BiConsumer<Integer, CompactBitmap> consumer) {
+        likerStore.forEachFilm(consumer);
+    }
+
+    public long memoryFootprintBytes() {
+        long bytes = 0;
+        for (CompactBitmap films : likedFilms.values()) {
+            bytes += films.memoryFootprintBytes();
+        }
+        return bytes;
+    }
+
+    void apply(int userId, int filmId, boolean added) {
+        likedFilms.compute(userId, (id, films) -> {
+            CompactBitmap current = films == null ? CompactBitmap.EMPTY : films;
+            CompactBitmap updated = added ? current.with(filmId) : current.without(filmId);
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+}
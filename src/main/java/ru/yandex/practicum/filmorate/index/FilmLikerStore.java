@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Лайкнувшие каждого фильма - по {@link CompactBitmap} на фильм: проверка лайка, число лайков и число общих
+ * лайкнувших у двух фильмов без обращения к БД. При старте читается снимок на диске, если он совпадает
+ * с film_likes по числу лайков и номеру версии, иначе всё строится из film_likes; снимок пишется
+ * при остановке. Изменения идут по {@link FilmLikeEvent} заменой значения целиком, чтение без блокировок.
+ */
+@Slf4j
+@Component
+public class FilmLikerStore {
+    private static final int SNAPSHOT_MAGIC = 0x464C4B53;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final FilmRepository filmRepository;
+    // null - снимки выключены
+    private final Path snapshotPath;
+    private final ConcurrentMap<Integer, CompactBitmap> likers = new ConcurrentHashMap<>();
+
+    public FilmLikerStore(FilmRepository filmRepository,
+                          @Value("${filmorate.likes.snapshot.path:}") String snapshotPath) {
+        this.filmRepository = filmRepository;
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        Metrics.gauge("filmorate.likes.store.films", likers, Map::size);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (snapshotPath == null || !loadSnapshot()) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        GroupedIds byFilm = new GroupedIds();
+        // Лайки идут по возрастанию user_id, поэтому массивы лайкнувших заполняются уже отсортированными
+        filmRepository.forEachLike((userId, filmId) ->
+                byFilm.add(Math.toIntExact(filmId), Math.toIntExact(userId)));
+        Map<Integer, CompactBitmap> loaded = new HashMap<>();
+        byFilm.forEach((filmId, users, size) -> loaded.put(filmId, CompactBitmap.of(users, 0, size)));
+        replace(loaded);
+        logLoaded("film_likes");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        int filmId = Math.toIntExact(event.getFilmId());
+        int userId = Math.toIntExact(event.getUserId());
+        apply(filmId, userId, event.isAdded());
+    }
+
+    public boolean hasLiked(long filmId, long userId) {
+        return likers(Math.toIntExact(filmId)).contains(Math.toIntExact(userId));
+    }
+
+    public int likeCount(long filmId) {
+        return likers(Math.toIntExact(filmId)).cardinality();
+    }
+
+    /**
+     * Сколько пользователей лайкнули оба фильма.
+     */
+    public int commonLikers(long filmId, long otherFilmId) {
+        return likers(Math.toIntExact(filmId)).intersectionSize(likers(Math.toIntExact(otherFilmId)));
+    }
+
+    public long likeTotal() {
+        long total = 0;
+        for (CompactBitmap users : likers.values()) {
+            total += users.cardinality();
+        }
+        return total;
+    }
+
+    public long memoryFootprintBytes() {
+        long bytes = 0;
+        for (CompactBitmap users : likers.values()) {
+            bytes += users.memoryFootprintBytes();
+        }
+        return bytes;
+    }
+
+    CompactBitmap likers(int filmId) {
+        return likers.getOrDefault(filmId, CompactBitmap.EMPTY);
+    }
+
+    /**
+     * Обход по возрастанию id фильма.
+     */
+    void forEachFilm(BiConsumer<Integer, CompactBitmap> consumer) {
+        new TreeMap<>(likers).forEach(consumer);
+    }
+
+    /**
+     * Версия film_likes берётся до копирования лайков: если между ними что-то изменилось, снимок
+     * не совпадёт с БД при следующем старте (или число лайков разойдётся уже здесь) и будет пропущен.
+     */
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        FilmRepository.LikesVersion version = filmRepository.getLikesVersion();
+        Map<Integer, CompactBitmap> films = new TreeMap<>(likers);
+        long total = films.values().stream().mapToLong(CompactBitmap::cardinality).sum();
+        if (total != version.count()) {
+            log.warn("Film liker snapshot skipped: {} likes in memory, {} in film_likes", total, version.count());
+            return;
+        }
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16), checksum))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(version.count());
+                out.writeLong(version.version());
+                out.writeInt(films.size());
+                for (Map.Entry<Integer, CompactBitmap> film : films.entrySet()) {
+                    out.writeInt(film.getKey());
+                    film.getValue().writeTo(out);
+                }
+                out.writeLong(checksum.getValue());
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Film liker snapshot written to {}: {} films, {} likes", snapshotPath, films.size(), total);
+        } catch (IOException e) {
+            log.warn("Failed to write film liker snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    boolean loadSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16), checksum))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Film liker snapshot {} has unknown format, rebuilding from film_likes", snapshotPath);
+                return false;
+            }
+            FilmRepository.LikesVersion version = new FilmRepository.LikesVersion(in.readLong(), in.readLong());
+            if (!version.equals(filmRepository.getLikesVersion())) {
+                log.info("Film liker snapshot {} is stale, rebuilding from film_likes", snapshotPath);
+                return false;
+            }
+            int filmCount = in.readInt();
+            Map<Integer, CompactBitmap> loaded = new HashMap<>();
+            for (int i = 0; i < filmCount; i++) {
+                loaded.put(in.readInt(), CompactBitmap.readFrom(in));
+            }
+            long expected = checksum.getValue();
+            if (in.readLong() != expected) {
+                log.warn("Film liker snapshot {} is corrupted, rebuilding from film_likes", snapshotPath);
+                return false;
+            }
+            replace(loaded);
+        } catch (IOException e) {
+            log.warn("Failed to read film liker snapshot {}, rebuilding from film_likes", snapshotPath, e);
+            return false;
+        }
+        logLoaded(snapshotPath.toString());
+        return true;
+    }
+
+    void apply(int filmId, int userId, boolean added) {
+        likers.compute(filmId, (id, users) -> {
+            CompactBitmap current = users == null ? CompactBitmap.EMPTY : users;
+            CompactBitmap updated = added ? current.with(userId) : current.without(userId);
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    private void replace(Map<Integer, CompactBitmap> loaded) {
+        likers.clear();
+        likers.putAll(loaded);
+    }
+
+    private void logLoaded(String source) {
+        long total = likeTotal();
+        long bytes = memoryFootprintBytes();
+        log.info("Film liker store loaded from {}: {} films, {} likes, {} bytes ({} bytes per 1M likes)",
+                source, likers.size(), total, bytes, total == 0 ? 0 : bytes * 1_000_000 / total);
+    }
+}
@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.model.film.FilmFacets;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рейтинг фильмов по числу лайков в памяти: засевается из БД при старте
+ * и обновляется по {@link FilmLikeEvent} и {@link FilmDeletedEvent}, так что /films/popular не ходит в БД за ранжированием.
+ * Помимо общего рейтинга держит отдельные рейтинги по жанру, MPA и году выпуска для фильтров.
+ * События применяются после коммита транзакции: незакоммиченные лайки не видны другим запросам,
+ * а откат ничего не меняет.
+ */
+@Slf4j
+@Component
+public class FilmPopularityIndex {
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+    private static final Ranking EMPTY = new Ranking();
+
+    private final FilmRepository filmRepository;
+    private final ConcurrentMap<Long, Integer> likeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, FilmFacets> facets = new ConcurrentHashMap<>();
+    private final Ranking ranking = new Ranking();
+    private final ConcurrentMap<Integer, Ranking> byGenre = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Ranking> byMpa = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Ranking> byYear = new ConcurrentHashMap<>();
+
+    public FilmPopularityIndex(FilmRepository filmRepository) {
+        this.filmRepository = filmRepository;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        likeCounts.clear();
+        facets.clear();
+        ranking.clear();
+        byGenre.clear();
+        byMpa.clear();
+        byYear.clear();
+        Map<Long, FilmFacets> rankedFilms = filmRepository.loadRankedFilmFacets();
+        rankedFilms.forEach((filmId, film) -> {
+            facets.put(filmId, film);
+            adjust(filmId, film.getLikeCount());
+        });
+        log.info("Popularity index seeded with {} films", likeCounts.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        adjust(event.getFilmId(), event.isAdded() ? 1 : -1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(FilmChangedEvent event) {
+        likeCounts.compute(event.getFilmId(), (filmId, likes) -> {
+            if (likes == null) {
+                // Фильм без лайков мог сохранить фасеты после снятия последнего лайка: сбрасываем их,
+                // чтобы при следующем лайке они подгрузились заново
+                facets.remove(filmId);
+                return null;
+            }
+            filmRepository.getFilmFacets(filmId).ifPresent(updated -> {
+                Entry entry = new Entry(likes, filmId);
+                unlink(entry, facets.get(filmId));
+                facets.put(filmId, updated);
+                link(entry, updated);
+            });
+            return likes;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        likeCounts.compute(event.getFilmId(), (filmId, likes) -> {
+            if (likes != null) {
+                unlink(new Entry(likes, filmId), facets.get(filmId));
+            }
+            facets.remove(filmId);
+            return null;
+        });
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        return getTopFilmIds(count, null, null, null);
+    }
+
+    public List<Long> getTopFilmIds(int count, Integer genreId, Integer mpaId, Integer year) {
+        // Обходим самый короткий из рейтингов по заданным условиям и дофильтровываем по остальным
+        Ranking source = ranking;
+        if (year != null) {
+            source = shorter(source, byYear.getOrDefault(year, EMPTY));
+        }
+        if (genreId != null) {
+            source = shorter(source, byGenre.getOrDefault(genreId, EMPTY));
+        }
+        if (mpaId != null) {
+            source = shorter(source, byMpa.getOrDefault(mpaId, EMPTY));
+        }
+
+        List<Long> ids = new ArrayList<>(count);
+        for (Entry entry : source) {
+            if (ids.size() >= count) {
+                break;
+            }
+            if (matches(facets.get(entry.filmId()), genreId, mpaId, year)) {
+                ids.add(entry.filmId());
+            }
+        }
+        return ids;
+    }
+
+    public int getLikeCount(long filmId) {
+        return likeCounts.getOrDefault(filmId, 0);
+    }
+
+    // compute() держит блокировку по ключу, поэтому перестановка в рейтингах, подгрузка фасетов и удаление
+    // одного фильма не перемешиваются
+    void adjust(long filmId, int delta) {
+        likeCounts.compute(filmId, (id, old) -> {
+            FilmFacets film = facets.get(id);
+            if (film == null) {
+                // Фасеты нужны только фильмам в рейтинге и подгружаются при первом лайке. Лайк, пришедший
+                // после удаления фильма, фильма в БД уже не найдёт и будет отброшен
+                film = delta > 0 ? filmRepository.getFilmFacets(id).orElse(null) : null;
+                if (film == null) {
+                    return old;
+                }
+                facets.put(id, film);
+            }
+            int current = old == null ? 0 : old;
+            int updated = current + delta;
+            if (old != null) {
+                unlink(new Entry(current, id), film);
+            }
+            if (updated <= 0) {
+                return null;
+            }
+            link(new Entry(updated, id), film);
+            return updated;
+        });
+    }
+
+    private void link(Entry entry, FilmFacets film) {
+        ranking.add(entry);
+        for (Integer genreId : film.getGenreIds()) {
+            byGenre.computeIfAbsent(genreId, id -> new Ranking()).add(entry);
+        }
+        byMpa.computeIfAbsent(film.getMpaId(), id -> new Ranking()).add(entry);
+        byYear.computeIfAbsent(film.getReleaseYear(), id -> new Ranking()).add(entry);
+    }
+
+    private void unlink(Entry entry, FilmFacets film) {
+        ranking.remove(entry);
+        for (Integer genreId : film.getGenreIds()) {
+            removeFrom(byGenre, genreId, entry);
+        }
+        removeFrom(byMpa, film.getMpaId(), entry);
+        removeFrom(byYear, film.getReleaseYear(), entry);
+    }
+
+    private static void removeFrom(Map<Integer, Ranking> rankings, int key, Entry entry) {
+        Ranking ranking = rankings.get(key);
+        if (ranking != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    private static Ranking shorter(Ranking current, Ranking candidate) {
+        return candidate.size() < current.size() ? candidate : current;
+    }
+
+    private static boolean matches(FilmFacets film, Integer genreId, Integer mpaId, Integer year) {
+        if (genreId == null && mpaId == null && year == null) {
+            return true;
+        }
+        if (film == null) {
+            return false;
+        }
+        return (genreId == null || film.getGenreIds().contains(genreId))
+                && (mpaId == null || film.getMpaId() == mpaId)
+                && (year == null || film.getReleaseYear() == year);
+    }
+
+    private record Entry(int likes, long filmId) {
+    }
+
+    // size() у ConcurrentSkipListSet обходит весь набор, поэтому размер рейтинга считается отдельно
+    private static final class Ranking implements Iterable<Entry> {
+        private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(RANKING);
+        private final AtomicInteger size = new AtomicInteger();
+
+        void add(Entry entry) {
+            if (entries.add(entry)) {
+                size.incrementAndGet();
+            }
+        }
+
+        void remove(Entry entry) {
+            if (entries.remove(entry)) {
+                size.decrementAndGet();
+            }
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        void clear() {
+            entries.clear();
+            size.set(0);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return entries.iterator();
+        }
+    }
+}
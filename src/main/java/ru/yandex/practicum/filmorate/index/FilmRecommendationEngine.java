@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации фильмов по похожим пользователям. Соседи ищутся без полного перебора: кандидаты набираются
+ * по спискам лайкнувших фильмы пользователя (сначала редкие фильмы, у популярных - равномерная выборка
+ * не больше fan-out-cap, всего не больше visit-budget), лучшие по числу совпадений пересчитываются точно -
+ * коэффициент Жаккара по {@link CompactBitmap}, параллельно. Соседи кэшируются на пользователя с TTL,
+ * а рекомендации каждый раз собираются из текущих лайков соседей.
+ */
+@Component
+public class FilmRecommendationEngine {
+    public static final int MAX_RECOMMENDATIONS = 100;
+
+    // Исключённый id получает такой счётчик, что инкременты обхода не сделают его положительным
+    private static final int EXCLUDED = Integer.MIN_VALUE / 2;
+    // Меньше кандидатов дешевле проверить в одном потоке, чем раздавать по пулу
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final Comparator<Neighbour> MOST_SIMILAR = Comparator.comparingDouble(Neighbour::similarity)
+            .reversed()
+            .thenComparingInt(Neighbour::userId);
+
+    private final FilmLikeIndex likeIndex;
+    private final int neighbourCount;
+    private final int candidateCount;
+    private final int fanOutCap;
+    private final int visitBudget;
+    private final int cacheSize;
+    private final long ttlMs;
+
+    private final ConcurrentMap<Integer, CachedNeighbours> cache = new ConcurrentHashMap<>();
+
+    private final Counter hits = Metrics.counter("filmorate.recommendations.neighbours.cache.hits");
+    private final Counter misses = Metrics.counter("filmorate.recommendations.neighbours.cache.misses");
+
+    public FilmRecommendationEngine(FilmLikeIndex likeIndex,
+                                    @Value("${filmorate.recommendations.neighbours:50}") int neighbourCount,
+                                    @Value("${filmorate.recommendations.candidates:2000}") int candidateCount,
+                                    @Value("${filmorate.recommendations.fan-out-cap:1000}") int fanOutCap,
+                                    @Value("${filmorate.recommendations.visit-budget:200000}") int visitBudget,
+                                    @Value("${filmorate.recommendations.cache-size:10000}") int cacheSize,
+                                    @Value("${filmorate.recommendations.cache.ttl-ms:600000}") long ttlMs) {
+        this.likeIndex = likeIndex;
+        this.neighbourCount = neighbourCount;
+        this.candidateCount = candidateCount;
+        this.fanOutCap = fanOutCap;
+        this.visitBudget = visitBudget;
+        this.cacheSize = cacheSize;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Соседи пользователя считаются от его лайков, поэтому его собственный лайк сбрасывает их - после
+     * завершения транзакции, когда индексы лайков уже обновлены. Лайки соседей подхватываются при сборке
+     * рекомендаций.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        cache.remove(Math.toIntExact(event.getUserId()));
+    }
+
+    /**
+     * Id фильмов, лучшие первыми: вес фильма - сумма сходства соседей, которые его лайкнули.
+     */
+    public List<Long> recommend(long userId, int limit) {
+        int user = Math.toIntExact(userId);
+        CompactBitmap liked = likeIndex.likedFilms(user);
+        if (liked.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours(user, liked)) {
+            likeIndex.likedFilms(neighbour.userId()).forEach(filmId -> {
+                if (!liked.contains(filmId)) {
+                    scores.merge(filmId, neighbour.similarity(), Double::sum);
+                }
+            });
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.min(limit, MAX_RECOMMENDATIONS))
+                .map(entry -> (long) entry.getKey())
+                .toList();
+    }
+
+    List<Neighbour> neighbours(int userId, CompactBitmap liked) {
+        long now = System.currentTimeMillis();
+        CachedNeighbours cached = cache.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            hits.increment();
+            return cached.neighbours();
+        }
+        misses.increment();
+        List<Neighbour> neighbours = findNeighbours(userId, liked);
+        store(userId, new CachedNeighbours(now + ttlMs, neighbours));
+        return neighbours;
+    }
+
+    private List<Neighbour> findNeighbours(int userId, CompactBitmap liked) {
+        int[] candidates = topCandidates(userId, liked);
+        Neighbour[] scored = new Neighbour[candidates.length];
+        IntStream range = IntStream.range(0, candidates.length);
+        if (candidates.length >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            CompactBitmap other = likeIndex.likedFilms(candidates[i]);
+            int common = liked.intersectionSize(other);
+            scored[i] = new Neighbour(candidates[i],
+                    (double) common / (liked.cardinality() + other.cardinality() - common));
+        });
+        return Arrays.stream(scored)
+                .filter(neighbour -> neighbour.similarity() > 0)
+                .sorted(MOST_SIMILAR)
+                .limit(neighbourCount)
+                .toList();
+    }
+
+    /**
+     * Пользователи с наибольшим числом совпавших лайков по (возможно, выборочному) обходу лайкнувших.
+     */
+    private int[] topCandidates(int userId, CompactBitmap liked) {
+        // Редкие фильмы лучше говорят о вкусе и дешевле в обходе, поэтому идут первыми
+        int[] films = liked.toArray();
+        CompactBitmap[] likersByFilm = new CompactBitmap[films.length];
+        for (int i = 0; i < films.length; i++) {
+            likersByFilm[i] = likeIndex.likers(films[i]);
+        }
+        Arrays.sort(likersByFilm, Comparator.comparingInt(CompactBitmap::cardinality));
+
+        long expectedVisits = 0;
+        for (CompactBitmap users : likersByFilm) {
+            expectedVisits += Math.min(users.cardinality(), fanOutCap);
+        }
+        IntIntMap overlap = new IntIntMap((int) Math.min(expectedVisits, visitBudget));
+        overlap.put(userId, EXCLUDED);
+        int visited = 0;
+        for (CompactBitmap users : likersByFilm) {
+            int size = users.cardinality();
+            int step = size > fanOutCap ? (size + fanOutCap - 1) / fanOutCap : 1;
+            visited += users.forEachSampled(step, visitBudget - visited, user -> overlap.add(user, 1));
+            if (visited >= visitBudget) {
+                break;
+            }
+        }
+        return TopCounts.topKeys(overlap, candidateCount);
+    }
+
+    private void store(int userId, CachedNeighbours entry) {
+        if (cache.size() >= cacheSize) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(cached -> cached.expiresAt() <= now);
+            if (cache.size() >= cacheSize) {
+                return;
+            }
+        }
+        cache.put(userId, entry);
+    }
+
+    record Neighbour(int userId, double similarity) {
+    }
+
+    private record CachedNeighbours(long expiresAt, List<Neighbour> neighbours) {
+    }
+}
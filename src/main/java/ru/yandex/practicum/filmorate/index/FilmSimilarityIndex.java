@@ -0,0 +1,446 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Похожие фильмы ("этот фильм лайкают вместе с..."): для каждого фильма хранится готовый список top-N
+ * соседей, и запрос - один поиск по id. Близость - смесь косинусной меры по совместным лайкам
+ * (co / sqrt(n_a * n_b)) и коэффициента Жаккара по жанрам; кандидаты - фильмы хотя бы с одним общим
+ * лайком. Лайки берутся из {@link FilmLikeIndex}, своей копии film_likes индекс не держит. При старте
+ * матрица совместных лайков считается параллельно (fork/join по фильмам), дальше поддерживается
+ * по {@link FilmLikeEvent}, {@link FilmChangedEvent} и {@link FilmDeletedEvent}: обработчики событий только
+ * ставят изменения в очередь, а фоновый поток раз в refresh-interval-ms применяет их пачкой, пересчитывая
+ * список каждого затронутого фильма один раз на пачку.
+ */
+@Slf4j
+@Component
+public class FilmSimilarityIndex {
+    private static final int[] NO_IDS = new int[0];
+    // Фильмов на одну подзадачу fork/join при полном пересчёте
+    private static final int ROWS_PER_TASK = 64;
+    private static final Comparator<SimilarFilm> BEST_FIRST = Comparator.comparingDouble(SimilarFilm::score)
+            .reversed()
+            .thenComparingInt(SimilarFilm::filmId);
+
+    private final FilmRepository filmRepository;
+    private final FilmLikeIndex likeIndex;
+    private final int topN;
+    private final double coLikeWeight;
+    private final long refreshIntervalMs;
+
+    // Изменения из потоков запросов; применяются пачкой в applyPending()
+    private final Queue<PendingLike> pendingLikes = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> pendingGenres = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> pendingDeletes = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService refresher;
+
+    // Состояние для инкрементальных обновлений; меняется и читается только под блокировкой this.
+    // В строках матрицы только ненулевые счётчики: обнулившаяся пара удаляется из обеих строк
+    private Map<Integer, IntIntMap> coLikes = new HashMap<>();
+    private Map<Integer, int[]> genres = new HashMap<>();
+
+    // Готовые списки для чтения: неизменяемые, заменяются целиком
+    private volatile ConcurrentMap<Integer, List<SimilarFilm>> similar = new ConcurrentHashMap<>();
+
+    public FilmSimilarityIndex(FilmRepository filmRepository,
+                               FilmLikeIndex likeIndex,
+                               @Value("${filmorate.films.similar.top-n:50}") int topN,
+                               @Value("${filmorate.films.similar.co-like-weight:0.8}") double coLikeWeight,
+                               @Value("${filmorate.films.similar.refresh-interval-ms:200}") long refreshIntervalMs) {
+        this.filmRepository = filmRepository;
+        this.likeIndex = likeIndex;
+        this.topN = topN;
+        this.coLikeWeight = coLikeWeight;
+        this.refreshIntervalMs = refreshIntervalMs;
+        Metrics.gauge("filmorate.films.similar.pairs", this, FilmSimilarityIndex::coLikedPairs);
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "film-similarity");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::applyPendingQuietly, refreshIntervalMs, refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Строит матрицу по текущему {@link FilmLikeIndex}. События, уже стоящие в очереди, после пересчёта
+     * применятся повторно: пары по ним пересчитываются заново, а не сдвигаются, так что это безопасно.
+     */
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        genres = loadGenres();
+
+        List<Integer> liked = new ArrayList<>();
+        likeIndex.forEachFilm((filmId, likers) -> liked.add(filmId));
+        int[] filmIds = liked.stream().mapToInt(Integer::intValue).toArray();
+
+        Row[] rows = new Row[filmIds.length];
+        ForkJoinPool.commonPool().invoke(new RowTask(filmIds, rows, 0, filmIds.length));
+
+        Map<Integer, IntIntMap> rebuiltCoLikes = new HashMap<>();
+        ConcurrentMap<Integer, List<SimilarFilm>> rebuiltSimilar = new ConcurrentHashMap<>();
+        long pairs = 0;
+        for (int i = 0; i < filmIds.length; i++) {
+            if (rows[i].coLikes().size() > 0) {
+                rebuiltCoLikes.put(filmIds[i], rows[i].coLikes());
+            }
+            pairs += rows[i].coLikes().size();
+            if (!rows[i].top().isEmpty()) {
+                rebuiltSimilar.put(filmIds[i], rows[i].top());
+            }
+        }
+        coLikes = rebuiltCoLikes;
+        similar = rebuiltSimilar;
+        log.info("Film similarity index built for {} films ({} co-liked pairs) in {} ms",
+                filmIds.length, pairs, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Пары пересчитываются по FilmLikeIndex, поэтому лайк ставится в очередь после того, как его применил индекс
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        pendingLikes.add(new PendingLike(Math.toIntExact(event.getUserId()), Math.toIntExact(event.getFilmId())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(FilmChangedEvent event) {
+        pendingGenres.add(Math.toIntExact(event.getFilmId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        pendingDeletes.add(Math.toIntExact(event.getFilmId()));
+    }
+
+    /**
+     * Применяет накопленные изменения. Лайк трогает только пары фильма с другими фильмами того же
+     * пользователя (и с фильмами, лайк которых он сменил в той же пачке): их счётчики пересчитываются
+     * пересечением лайкнувших из {@link FilmLikeIndex}. Список фильма, у которого изменились лайки или жанры,
+     * пересчитывается один раз на пачку, сколько бы событий по нему ни пришло. Вызывается фоновым потоком,
+     * в тестах - напрямую.
+     */
+    public synchronized void applyPending() {
+        Map<Integer, IntIntMap> changedByUser = new HashMap<>();
+        PendingLike like;
+        while ((like = pendingLikes.poll()) != null) {
+            changedByUser.computeIfAbsent(like.userId(), id -> new IntIntMap(4)).put(like.filmId(), 1);
+        }
+        IntIntMap dirty = new IntIntMap(16);
+        Set<Long> pairs = new HashSet<>();
+        changedByUser.forEach((userId, changed) -> {
+            CompactBitmap liked = likeIndex.likedFilms(userId);
+            changed.forEach((filmId, ignored) -> {
+                dirty.put(filmId, 1);
+                liked.forEach(otherId -> addPair(pairs, filmId, otherId));
+                changed.forEach((otherId, alsoIgnored) -> addPair(pairs, filmId, otherId));
+            });
+        });
+        for (long pair : pairs) {
+            recountPair((int) (pair >>> 32), (int) pair);
+        }
+
+        Integer filmId;
+        while ((filmId = pendingGenres.poll()) != null) {
+            if (reloadGenres(filmId)) {
+                dirty.put(filmId, 1);
+            }
+        }
+        while ((filmId = pendingDeletes.poll()) != null) {
+            // Лайки удалённого фильма уже сняты своими событиями, остаются его жанры и строка матрицы
+            forget(filmId);
+            dirty.remove(filmId);
+        }
+        dirty.forEach((changedId, ignored) -> refresh(changedId));
+    }
+
+    /**
+     * Id самых похожих фильмов, лучшие первыми; не больше top-n.
+     */
+    public List<Long> getSimilarFilmIds(long filmId, int limit) {
+        List<SimilarFilm> films = similar.getOrDefault(Math.toIntExact(filmId), List.of());
+        List<Long> ids = new ArrayList<>(Math.min(limit, films.size()));
+        for (int i = 0; i < films.size() && i < limit; i++) {
+            ids.add((long) films.get(i).filmId());
+        }
+        return ids;
+    }
+
+    public int getMaxSimilarFilms() {
+        return topN;
+    }
+
+    /**
+     * Число ненулевых ячеек матрицы совместных лайков (каждая пара учтена с обеих сторон).
+     */
+    synchronized long coLikedPairs() {
+        long pairs = 0;
+        for (IntIntMap row : coLikes.values()) {
+            pairs += row.size();
+        }
+        return pairs;
+    }
+
+    private static void addPair(Set<Long> pairs, int filmId, int otherId) {
+        if (filmId != otherId) {
+            pairs.add(((long) Math.min(filmId, otherId) << 32) | Math.max(filmId, otherId));
+        }
+    }
+
+    private void recountPair(int filmId, int otherId) {
+        int together = likeIndex.likers(filmId).intersectionSize(likeIndex.likers(otherId));
+        boolean dropped = setCoLikes(filmId, otherId, together);
+        setCoLikes(otherId, filmId, together);
+        if (dropped) {
+            // Обнулившаяся пара выпала из строк, и refresh её не увидит: убираем фильмы из списков друг друга
+            patch(otherId, filmId, 0);
+            patch(filmId, otherId, 0);
+        }
+    }
+
+    /**
+     * Записывает счётчик пары в строку фильма; true - ненулевой счётчик обнулился и удалён.
+     */
+    private boolean setCoLikes(int filmId, int otherId, int together) {
+        IntIntMap row = coLikes.get(filmId);
+        if (together > 0) {
+            if (row == null) {
+                row = new IntIntMap(16);
+                coLikes.put(filmId, row);
+            }
+            row.put(otherId, together);
+            return false;
+        }
+        if (row == null || !row.remove(otherId)) {
+            return false;
+        }
+        if (row.size() == 0) {
+            coLikes.remove(filmId);
+        }
+        return true;
+    }
+
+    private void applyPendingQuietly() {
+        try {
+            applyPending();
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply pending film similarity updates", e);
+        }
+    }
+
+    // Без блокировки: вызывается под ней или из подзадач полного пересчёта, который её держит
+    private int[] genresOf(int filmId) {
+        return genres.getOrDefault(filmId, NO_IDS);
+    }
+
+    private boolean reloadGenres(int filmId) {
+        int[] updated = filmRepository.getFilmGenreIds(filmId).stream()
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+        if (Arrays.equals(genresOf(filmId), updated)) {
+            return false;
+        }
+        if (updated.length == 0) {
+            genres.remove(filmId);
+        } else {
+            genres.put(filmId, updated);
+        }
+        return true;
+    }
+
+    private void forget(int filmId) {
+        genres.remove(filmId);
+        coLikes.remove(filmId);
+        similar.remove(filmId);
+    }
+
+    /**
+     * Пересчитывает список фильма целиком и правит его позицию в списках соседей: вместе с числом лайков
+     * или жанрами фильма меняется его близость ко всем фильмам, с которыми у него есть общие лайки.
+     */
+    private void refresh(int filmId) {
+        IntIntMap row = coLikes.get(filmId);
+        if (row == null) {
+            // Общих лайков не осталось ни с кем: пары уже убраны из списков соседей через dropped
+            similar.remove(filmId);
+            return;
+        }
+        publish(filmId, topOf(filmId, row));
+        row.forEach((otherId, together) -> patch(otherId, filmId, score(otherId, filmId, together)));
+    }
+
+    private void patch(int rowId, int filmId, double score) {
+        List<SimilarFilm> current = similar.getOrDefault(rowId, List.of());
+        int at = indexOf(current, filmId);
+        SimilarFilm candidate = new SimilarFilm(filmId, score);
+        boolean full = current.size() >= topN;
+        boolean belowLast = full && (score <= 0 || BEST_FIRST.compare(candidate, current.getLast()) > 0);
+        if (at >= 0 && belowLast) {
+            // Фильм опустился ниже последнего места: его может сменить тот, кого в списке не было
+            publish(rowId, topOf(rowId, coLikes.get(rowId)));
+            return;
+        }
+        if (at < 0 && (score <= 0 || belowLast)) {
+            return;
+        }
+        List<SimilarFilm> updated = new ArrayList<>(current);
+        if (at >= 0) {
+            updated.remove(at);
+        }
+        if (score > 0) {
+            updated.add(-Collections.binarySearch(updated, candidate, BEST_FIRST) - 1, candidate);
+        }
+        if (updated.size() > topN) {
+            updated.removeLast();
+        }
+        publish(rowId, List.copyOf(updated));
+    }
+
+    private void publish(int filmId, List<SimilarFilm> top) {
+        if (top.isEmpty()) {
+            similar.remove(filmId);
+        } else {
+            similar.put(filmId, top);
+        }
+    }
+
+    private List<SimilarFilm> topOf(int filmId, IntIntMap row) {
+        PriorityQueue<SimilarFilm> top = new PriorityQueue<>(topN + 1, BEST_FIRST.reversed());
+        if (row == null) {
+            return List.of();
+        }
+        row.forEach((otherId, together) -> {
+            SimilarFilm candidate = new SimilarFilm(otherId, score(filmId, otherId, together));
+            if (top.size() < topN) {
+                top.add(candidate);
+            } else if (BEST_FIRST.compare(candidate, top.peek()) < 0) {
+                top.poll();
+                top.add(candidate);
+            }
+        });
+        List<SimilarFilm> ranked = new ArrayList<>(top);
+        ranked.sort(BEST_FIRST);
+        return List.copyOf(ranked);
+    }
+
+    private double score(int filmId, int otherId, int together) {
+        if (together <= 0) {
+            return 0;
+        }
+        double coLiked = together / Math.sqrt((double) likeIndex.likers(filmId).cardinality()
+                * likeIndex.likers(otherId).cardinality());
+        return coLikeWeight * coLiked + (1 - coLikeWeight) * jaccard(genresOf(filmId), genresOf(otherId));
+    }
+
+    private static double jaccard(int[] genres, int[] otherGenres) {
+        if (genres.length == 0 && otherGenres.length == 0) {
+            return 0;
+        }
+        int common = SortedIntSets.intersectionSize(genres, otherGenres);
+        return (double) common / (genres.length + otherGenres.length - common);
+    }
+
+    private Map<Integer, int[]> loadGenres() {
+        Map<Integer, List<Integer>> loaded = new HashMap<>();
+        filmRepository.forEachFilmGenre((filmId, genreId) ->
+                loaded.computeIfAbsent(Math.toIntExact(filmId), id -> new ArrayList<>()).add(genreId));
+        Map<Integer, int[]> result = new HashMap<>();
+        loaded.forEach((filmId, ids) -> result.put(filmId, ids.stream().mapToInt(Integer::intValue).toArray()));
+        return result;
+    }
+
+    private static int indexOf(List<SimilarFilm> films, int filmId) {
+        for (int i = 0; i < films.size(); i++) {
+            if (films.get(i).filmId() == filmId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public record SimilarFilm(int filmId, double score) {
+    }
+
+    private record Row(IntIntMap coLikes, List<SimilarFilm> top) {
+    }
+
+    private record PendingLike(int userId, int filmId) {
+    }
+
+    /**
+     * Строки матрицы для фильмов [from, to): совместные лайки по лайкнувшим из {@link FilmLikeIndex}
+     * и top-N по ним. Каждая подзадача пишет только в свои ячейки rows.
+     */
+    private final class RowTask extends RecursiveAction {
+        private final int[] filmIds;
+        private final Row[] rows;
+        private final int from;
+        private final int to;
+
+        RowTask(int[] filmIds, Row[] rows, int from, int to) {
+            this.filmIds = filmIds;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(filmIds, rows, from, middle), new RowTask(filmIds, rows, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int filmId = filmIds[i];
+                IntIntMap row = new IntIntMap(16);
+                likeIndex.likers(filmId).forEach(userId -> likeIndex.likedFilms(userId).forEach(otherId -> {
+                    if (otherId != filmId) {
+                        row.add(otherId, 1);
+                    }
+                }));
+                rows[i] = new Row(row, topOf(filmId, row));
+            }
+        }
+    }
+}
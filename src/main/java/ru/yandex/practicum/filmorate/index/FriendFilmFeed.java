@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Фильмы, популярные среди друзей пользователя: списки лайков друзей из {@link FilmLikeIndex} сливаются
+ * в счётчик по фильмам, лучшие отбираются кучей размера count. У пользователя с очень большим числом
+ * друзей берётся равномерная выборка не больше fan-out-cap друзей.
+ */
+@Component
+public class FriendFilmFeed {
+    public static final int MAX_FILMS = 100;
+
+    private final FriendGraph friendGraph;
+    private final FilmLikeIndex likeIndex;
+    private final int fanOutCap;
+
+    public FriendFilmFeed(FriendGraph friendGraph,
+                          FilmLikeIndex likeIndex,
+                          @Value("${filmorate.friends.popular-films.fan-out-cap:1000}") int fanOutCap) {
+        this.friendGraph = friendGraph;
+        this.likeIndex = likeIndex;
+        this.fanOutCap = fanOutCap;
+    }
+
+    /**
+     * Id фильмов по убыванию числа лайкнувших их друзей (из выборки, если друзей больше fan-out-cap).
+     */
+    public List<Long> getPopularFilmIds(long userId, int count) {
+        IntSlice friends = friendGraph.neighbours(userId);
+        int step = friends.size() > fanOutCap ? (friends.size() + fanOutCap - 1) / fanOutCap : 1;
+
+        long expectedLikes = 0;
+        for (int i = 0; i < friends.size(); i += step) {
+            expectedLikes += likeIndex.likedFilms(friends.get(i)).cardinality();
+        }
+        // Различных фильмов обычно много меньше, чем лайков, поэтому начальный размер ограничен, дальше карта растёт
+        IntIntMap likes = new IntIntMap((int) Math.min(expectedLikes, 1 << 16));
+        for (int i = 0; i < friends.size(); i += step) {
+            likeIndex.likedFilms(friends.get(i)).forEach(filmId -> likes.add(filmId, 1));
+        }
+
+        int[] top = TopCounts.topKeys(likes, Math.min(count, MAX_FILMS));
+        List<Long> filmIds = new ArrayList<>(top.length);
+        for (int filmId : top) {
+            filmIds.add((long) filmId);
+        }
+        return filmIds;
+    }
+}
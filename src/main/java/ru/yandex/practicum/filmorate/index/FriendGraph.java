@@ -0,0 +1,421 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.event.FriendshipChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Граф дружбы в памяти в формате CSR: друзья пользователя u лежат отсортированными
+ * в neighbours[offsets[u] .. offsets[u + 1]), так что на ребро уходит 4 байта, а на пользователя - ещё 4.
+ * Базовый CSR неизменяем; изменения после сборки копятся в overlay (полный отсортированный список
+ * друзей изменённого пользователя) и сливаются в новый CSR фоновым потоком, когда overlay разрастается.
+ * Строки базового CSR читаются без копирования, окнами {@link IntSlice} над общим массивом.
+ * Рёбра направленные, как в таблице friendship: user_id -> friend_id, статус не учитывается.
+ * Для входящих рёбер (кто добавил пользователя в друзья) держится такой же транспонированный CSR.
+ */
+@Slf4j
+@Component
+public class FriendGraph {
+    private final FriendshipRepository friendshipRepository;
+    private final ExecutorService compactor;
+    private final Adjacency outgoing;
+    private final Adjacency incoming;
+
+    public FriendGraph(FriendshipRepository friendshipRepository,
+                       @Value("${filmorate.friends.graph.compact-threshold:10000}") int compactThreshold) {
+        this.friendshipRepository = friendshipRepository;
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "friend-graph-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.outgoing = new Adjacency(compactThreshold, compactor);
+        this.incoming = new Adjacency(compactThreshold, compactor);
+        Metrics.gauge("filmorate.friends.graph.edges", this, FriendGraph::edgeCount);
+        Metrics.gauge("filmorate.friends.graph.bytes", this, FriendGraph::memoryFootprintBytes);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Csr.Builder builder = new Csr.Builder();
+        friendshipRepository.forEachFriendship((userId, friendId) -> builder.add(toInt(userId), toInt(friendId)));
+        Csr csr = builder.build();
+        outgoing.reset(csr);
+        incoming.reset(csr.transpose());
+        log.info("Friend graph loaded: {} users, {} edges, ~{} KB",
+                csr.userCount(), csr.edgeCount(), memoryFootprintBytes() / 1024);
+    }
+
+    @PreDestroy
+    public void stop() {
+        compactor.shutdownNow();
+    }
+
+    // Без транзакции слушатели вызываются сразу и по порядку: граф обновляется раньше всех, кто от него считает
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        int userId = toInt(event.getUserId());
+        int friendId = toInt(event.getFriendId());
+        if (event.isAdded()) {
+            link(userId, friendId);
+        } else {
+            unlink(userId, friendId);
+        }
+    }
+
+    public List<Long> getFriendIds(long userId) {
+        return toIds(neighbours(userId));
+    }
+
+    public boolean hasFriend(long userId, long friendId) {
+        return neighbours(userId).contains(toInt(friendId));
+    }
+
+    public long edgeCount() {
+        return outgoing.edgeCount();
+    }
+
+    /**
+     * Оценка занимаемой памяти: массивы обоих CSR плюс overlay (заголовки массивов, ключи и узлы ConcurrentHashMap).
+     */
+    public long memoryFootprintBytes() {
+        return outgoing.memoryFootprintBytes() + incoming.memoryFootprintBytes();
+    }
+
+    /**
+     * Отсортированные id друзей: окно над общим массивом без копирования, изменять его нельзя.
+     */
+    IntSlice neighbours(long userId) {
+        return outgoing.row(userId);
+    }
+
+    /**
+     * Отсортированные id тех, у кого userId в друзьях (входящие заявки и подписчики).
+     */
+    IntSlice incoming(long userId) {
+        return incoming.row(userId);
+    }
+
+    int degree(long userId) {
+        return outgoing.degree(userId);
+    }
+
+    void compact() {
+        outgoing.compact();
+        incoming.compact();
+    }
+
+    private void link(int userId, int friendId) {
+        outgoing.link(userId, friendId);
+        incoming.link(friendId, userId);
+    }
+
+    private void unlink(int userId, int friendId) {
+        outgoing.unlink(userId, friendId);
+        incoming.unlink(friendId, userId);
+    }
+
+    static List<Long> toIds(int[] friends) {
+        return toIds(IntSlice.of(friends));
+    }
+
+    static List<Long> toIds(IntSlice friends) {
+        List<Long> ids = new ArrayList<>(friends.size());
+        for (int i = 0; i < friends.size(); i++) {
+            ids.add((long) friends.get(i));
+        }
+        return ids;
+    }
+
+    private static int toInt(long userId) {
+        // user_id в схеме - INT, так что в int помещается любой существующий id
+        return Math.toIntExact(userId);
+    }
+
+    /**
+     * Одно направление рёбер: базовый CSR плюс overlay изменённых строк.
+     */
+    private static final class Adjacency {
+        private final int compactThreshold;
+        private final ExecutorService compactor;
+        // Обновления overlay идут под read-lock и не мешают друг другу, слияние - под write-lock
+        private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+        // Не больше одного слияния в очереди: пока оно не выполнено, новые обновления его не дублируют
+        private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+        private volatile State state = new State(Csr.EMPTY, new ConcurrentHashMap<>());
+
+        private Adjacency(int compactThreshold, ExecutorService compactor) {
+            this.compactThreshold = compactThreshold;
+            this.compactor = compactor;
+        }
+
+        void reset(Csr base) {
+            compactionLock.writeLock().lock();
+            try {
+                state = new State(base, new ConcurrentHashMap<>());
+            } finally {
+                compactionLock.writeLock().unlock();
+            }
+        }
+
+        IntSlice row(long userId) {
+            if (userId < 0 || userId > Integer.MAX_VALUE) {
+                return IntSlice.EMPTY;
+            }
+            State current = state;
+            int[] changed = current.overlay().get((int) userId);
+            return changed != null ? IntSlice.of(changed) : current.base().row((int) userId);
+        }
+
+        int degree(long userId) {
+            if (userId < 0 || userId > Integer.MAX_VALUE) {
+                return 0;
+            }
+            State current = state;
+            int[] changed = current.overlay().get((int) userId);
+            return changed != null ? changed.length : current.base().degree((int) userId);
+        }
+
+        long edgeCount() {
+            State current = state;
+            long edges = current.base().edgeCount();
+            for (var entry : current.overlay().entrySet()) {
+                edges += entry.getValue().length - current.base().degree(entry.getKey());
+            }
+            return edges;
+        }
+
+        long memoryFootprintBytes() {
+            State current = state;
+            long bytes = current.base().memoryFootprintBytes();
+            for (int[] friends : current.overlay().values()) {
+                bytes += 16 + 4L * friends.length + 16 + 32;
+            }
+            return bytes;
+        }
+
+        void link(int userId, int friendId) {
+            update(userId, friends -> {
+                int position = Arrays.binarySearch(friends, friendId);
+                if (position >= 0) {
+                    return friends;
+                }
+                int insertAt = -position - 1;
+                int[] updated = new int[friends.length + 1];
+                System.arraycopy(friends, 0, updated, 0, insertAt);
+                updated[insertAt] = friendId;
+                System.arraycopy(friends, insertAt, updated, insertAt + 1, friends.length - insertAt);
+                return updated;
+            });
+        }
+
+        void unlink(int userId, int friendId) {
+            update(userId, friends -> {
+                int position = Arrays.binarySearch(friends, friendId);
+                if (position < 0) {
+                    return friends;
+                }
+                int[] updated = new int[friends.length - 1];
+                System.arraycopy(friends, 0, updated, 0, position);
+                System.arraycopy(friends, position + 1, updated, position, friends.length - position - 1);
+                return updated;
+            });
+        }
+
+        void compact() {
+            compactionLock.writeLock().lock();
+            try {
+                State current = state;
+                if (current.overlay().isEmpty()) {
+                    return;
+                }
+                state = new State(current.base().merge(current.overlay()), new ConcurrentHashMap<>());
+                log.debug("Friend graph compacted: {} changed users merged", current.overlay().size());
+            } finally {
+                compactionLock.writeLock().unlock();
+            }
+        }
+
+        // Список друзей пользователя заменяется целиком (copy-on-write), поэтому читатели без блокировок
+        // видят либо старый, либо новый массив
+        private void update(int userId, UnaryOperator<int[]> change) {
+            compactionLock.readLock().lock();
+            try {
+                State current = state;
+                current.overlay().compute(userId, (id, changed) ->
+                        change.apply(changed != null ? changed : current.base().row(id).toArray()));
+            } finally {
+                compactionLock.readLock().unlock();
+            }
+            // Слияние перестраивает весь CSR, поэтому идёт в фоне, а не в потоке запроса
+            if (state.overlay().size() > compactThreshold && compactionScheduled.compareAndSet(false, true)) {
+                try {
+                    compactor.execute(this::compactInBackground);
+                } catch (RejectedExecutionException e) {
+                    // Приложение останавливается: overlay просто остаётся несжатым
+                    compactionScheduled.set(false);
+                }
+            }
+        }
+
+        private void compactInBackground() {
+            compactionScheduled.set(false);
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                log.warn("Friend graph compaction failed", e);
+            }
+        }
+    }
+
+    private record State(Csr base, ConcurrentMap<Integer, int[]> overlay) {
+    }
+
+    /**
+     * Неизменяемая CSR-матрица смежности, индексированная прямо по id пользователя.
+     */
+    record Csr(int[] offsets, int[] neighbours) {
+        static final Csr EMPTY = new Csr(new int[1], new int[0]);
+
+        IntSlice row(int userId) {
+            if (userId < 0 || userId + 1 >= offsets.length) {
+                return IntSlice.EMPTY;
+            }
+            int from = offsets[userId];
+            int to = offsets[userId + 1];
+            return from == to ? IntSlice.EMPTY : new IntSlice(neighbours, from, to);
+        }
+
+        int degree(int userId) {
+            return userId < 0 || userId + 1 >= offsets.length ? 0 : offsets[userId + 1] - offsets[userId];
+        }
+
+        int userCount() {
+            return offsets.length - 1;
+        }
+
+        long edgeCount() {
+            return neighbours.length;
+        }
+
+        long memoryFootprintBytes() {
+            return 16 + 4L * offsets.length + 16 + 4L * neighbours.length;
+        }
+
+        Csr merge(ConcurrentMap<Integer, int[]> overlay) {
+            int maxUserId = userCount() - 1;
+            long edges = neighbours.length;
+            for (var entry : overlay.entrySet()) {
+                maxUserId = Math.max(maxUserId, entry.getKey());
+                edges += entry.getValue().length - degree(entry.getKey());
+            }
+            int[] mergedOffsets = new int[maxUserId + 2];
+            int[] mergedNeighbours = new int[Math.toIntExact(edges)];
+            int position = 0;
+            for (int userId = 0; userId <= maxUserId; userId++) {
+                mergedOffsets[userId] = position;
+                int[] changed = overlay.get(userId);
+                if (changed != null) {
+                    System.arraycopy(changed, 0, mergedNeighbours, position, changed.length);
+                    position += changed.length;
+                } else {
+                    int degree = degree(userId);
+                    if (degree > 0) {
+                        System.arraycopy(neighbours, offsets[userId], mergedNeighbours, position, degree);
+                        position += degree;
+                    }
+                }
+            }
+            mergedOffsets[maxUserId + 1] = position;
+            return new Csr(mergedOffsets, mergedNeighbours);
+        }
+
+        /**
+         * CSR обратных рёбер. Строки обходятся по возрастанию id, поэтому списки получаются уже отсортированными.
+         */
+        Csr transpose() {
+            int maxTargetId = -1;
+            for (int target : neighbours) {
+                maxTargetId = Math.max(maxTargetId, target);
+            }
+            int[] reversedOffsets = new int[maxTargetId + 2];
+            for (int target : neighbours) {
+                reversedOffsets[target + 1]++;
+            }
+            for (int target = 0; target <= maxTargetId; target++) {
+                reversedOffsets[target + 1] += reversedOffsets[target];
+            }
+            int[] reversed = new int[neighbours.length];
+            int[] cursor = Arrays.copyOf(reversedOffsets, reversedOffsets.length - 1);
+            for (int source = 0; source < userCount(); source++) {
+                for (int i = offsets[source]; i < offsets[source + 1]; i++) {
+                    reversed[cursor[neighbours[i]]++] = source;
+                }
+            }
+            return new Csr(reversedOffsets, reversed);
+        }
+
+        /**
+         * Собирает CSR из рёбер в любом порядке: подсчёт степеней, раскладка и сортировка каждой строки.
+         */
+        static final class Builder {
+            private int[] from = new int[1024];
+            private int[] to = new int[1024];
+            private int size;
+            private int maxUserId = -1;
+
+            void add(int userId, int friendId) {
+                if (size == from.length) {
+                    from = Arrays.copyOf(from, size * 2);
+                    to = Arrays.copyOf(to, size * 2);
+                }
+                from[size] = userId;
+                to[size] = friendId;
+                size++;
+                maxUserId = Math.max(maxUserId, userId);
+            }
+
+            Csr build() {
+                int[] offsets = new int[maxUserId + 2];
+                for (int i = 0; i < size; i++) {
+                    offsets[from[i] + 1]++;
+                }
+                for (int userId = 0; userId <= maxUserId; userId++) {
+                    offsets[userId + 1] += offsets[userId];
+                }
+                int[] neighbours = new int[size];
+                int[] cursor = Arrays.copyOf(offsets, offsets.length - 1);
+                for (int i = 0; i < size; i++) {
+                    neighbours[cursor[from[i]]++] = to[i];
+                }
+                for (int userId = 0; userId <= maxUserId; userId++) {
+                    Arrays.sort(neighbours, offsets[userId], offsets[userId + 1]);
+                }
+                return new Csr(offsets, neighbours);
+            }
+        }
+    }
+}
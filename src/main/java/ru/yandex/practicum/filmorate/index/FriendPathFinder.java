@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Кратчайшая цепочка дружбы между двумя пользователями: двунаправленный BFS по {@link FriendGraph},
+ * вперёд по исходящим рёбрам от первого пользователя и назад по входящим от второго. За шаг
+ * раскрывается целый уровень меньшей из двух границ; первая же встреча даёт кратчайший путь.
+ * Обход ограничен глубиной и общим числом посещённых вершин.
+ */
+@Component
+public class FriendPathFinder {
+    private final FriendGraph friendGraph;
+    private final int visitBudget;
+
+    public FriendPathFinder(FriendGraph friendGraph,
+                            @Value("${filmorate.friends.path.visit-budget:1000000}") int visitBudget) {
+        this.friendGraph = friendGraph;
+        this.visitBudget = visitBudget;
+    }
+
+    /**
+     * Цепочка id от userId до otherId включительно, не длиннее maxDepth рёбер; пусто, если такой
+     * нет или бюджет посещений исчерпан раньше.
+     */
+    public Optional<List<Long>> findPath(long userId, long otherId, int maxDepth) {
+        int source = Math.toIntExact(userId);
+        int target = Math.toIntExact(otherId);
+        if (source == target) {
+            return Optional.of(List.of(userId));
+        }
+
+        // Значение - соседняя вершина на пути к своему корню; у корня - он сам
+        IntIntMap forwardParents = new IntIntMap(1024);
+        IntIntMap backwardParents = new IntIntMap(1024);
+        forwardParents.put(source, source);
+        backwardParents.put(target, target);
+        int[] forwardFrontier = {source};
+        int[] backwardFrontier = {target};
+
+        for (int depth = 0; depth < maxDepth; depth++) {
+            if (forwardFrontier.length == 0 || backwardFrontier.length == 0) {
+                return Optional.empty();
+            }
+            Level level;
+            if (forwardFrontier.length <= backwardFrontier.length) {
+                level = expand(forwardFrontier, forwardParents, backwardParents, true);
+                forwardFrontier = level.frontier();
+            } else {
+                level = expand(backwardFrontier, backwardParents, forwardParents, false);
+                backwardFrontier = level.frontier();
+            }
+            if (level.meeting() >= 0) {
+                return Optional.of(buildPath(level.meeting(), forwardParents, backwardParents));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Level expand(int[] frontier, IntIntMap parents, IntIntMap otherParents, boolean forward) {
+        int[] next = new int[Math.max(frontier.length, 16)];
+        int size = 0;
+        for (int node : frontier) {
+            IntSlice neighbours = forward ? friendGraph.neighbours(node) : friendGraph.incoming(node);
+            for (int i = 0; i < neighbours.size(); i++) {
+                int neighbour = neighbours.get(i);
+                if (!parents.putIfAbsent(neighbour, node)) {
+                    continue;
+                }
+                if (otherParents.containsKey(neighbour)) {
+                    return new Level(null, neighbour);
+                }
+                if (parents.size() + otherParents.size() > visitBudget) {
+                    // Бюджет исчерпан: пустая граница завершит поиск без результата
+                    return new Level(new int[0], -1);
+                }
+                if (size == next.length) {
+                    next = Arrays.copyOf(next, size * 2);
+                }
+                next[size++] = neighbour;
+            }
+        }
+        return new Level(Arrays.copyOf(next, size), -1);
+    }
+
+    private static List<Long> buildPath(int meeting, IntIntMap forwardParents, IntIntMap backwardParents) {
+        List<Long> path = new ArrayList<>();
+        int node = meeting;
+        path.add((long) node);
+        while (forwardParents.get(node, node) != node) {
+            node = forwardParents.get(node, node);
+            path.add((long) node);
+        }
+        Collections.reverse(path);
+        node = meeting;
+        while (backwardParents.get(node, node) != node) {
+            node = backwardParents.get(node, node);
+            path.add((long) node);
+        }
+        return path;
+    }
+
+    private record Level(int[] frontier, int meeting) {
+    }
+}
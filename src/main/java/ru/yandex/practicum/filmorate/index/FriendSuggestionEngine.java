@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FriendshipChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Друзья друзей, ранжированные по числу общих друзей. Обход двух шагов ограничен: у друга с большим
+ * числом друзей берётся равномерная выборка не больше fan-out-cap, а всего просматривается не больше
+ * visit-budget рёбер. Результат кэшируется на пользователя; изменение ребра u -> f сбрасывает только тех,
+ * чьи предложения от него зависят: u (его друзья), f (его входящие) и всех, у кого u в друзьях (второй шаг).
+ */
+@Component
+public class FriendSuggestionEngine {
+    // Столько лучших кандидатов считается и кэшируется; запрос с меньшим limit берёт префикс
+    public static final int MAX_SUGGESTIONS = 100;
+
+    // Исключённый id получает такой счётчик, что инкременты обхода не сделают его положительным
+    private static final int EXCLUDED = Integer.MIN_VALUE / 2;
+
+    private final FriendGraph friendGraph;
+    private final int fanOutCap;
+    private final int visitBudget;
+    private final int cacheSize;
+
+    // Растёт при каждом сбросе: результат, посчитанный во время сброса, мог застать старый граф и не кэшируется
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ConcurrentMap<Long, List<Suggestion>> cache = new ConcurrentHashMap<>();
+
+    private final Counter hits = Metrics.counter("filmorate.friends.suggestions.cache.hits");
+    private final Counter misses = Metrics.counter("filmorate.friends.suggestions.cache.misses");
+
+    public FriendSuggestionEngine(FriendGraph friendGraph,
+                                  @Value("${filmorate.friends.suggestions.fan-out-cap:1000}") int fanOutCap,
+                                  @Value("${filmorate.friends.suggestions.visit-budget:200000}") int visitBudget,
+                                  @Value("${filmorate.friends.suggestions.cache-size:10000}") int cacheSize) {
+        this.friendGraph = friendGraph;
+        this.fanOutCap = fanOutCap;
+        this.visitBudget = visitBudget;
+        this.cacheSize = cacheSize;
+    }
+
+    // Граф меняется после коммита, поэтому кэш сбрасывается после завершения транзакции, когда граф уже обновлён.
+    // Изменения дружбы идут и без транзакции - тогда порядок задаёт @Order: сначала FriendGraph, потом сброс кэша,
+    // и подсказка, посчитанная между ними, уже видит новое ребро
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        invalidations.incrementAndGet();
+        long userId = event.getUserId();
+        cache.remove(userId);
+        cache.remove(event.getFriendId());
+        // Тех, у кого userId в друзьях, проще найти со стороны кэша, если он меньше списка входящих
+        IntSlice followers = friendGraph.incoming(userId);
+        if (followers.size() <= cache.size()) {
+            for (int i = 0; i < followers.size(); i++) {
+                cache.remove((long) followers.get(i));
+            }
+        } else {
+            cache.keySet().removeIf(cachedId -> friendGraph.hasFriend(cachedId, userId));
+        }
+    }
+
+    public List<Suggestion> suggest(long userId, int limit) {
+        List<Suggestion> suggestions = cache.get(userId);
+        if (suggestions != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            long stamp = invalidations.get();
+            suggestions = compute(userId);
+            if (invalidations.get() == stamp) {
+                store(userId, suggestions);
+            }
+        }
+        return suggestions.subList(0, Math.min(limit, suggestions.size()));
+    }
+
+    List<Suggestion> compute(long userId) {
+        IntSlice friends = friendGraph.neighbours(userId);
+        IntSlice incoming = friendGraph.incoming(userId);
+
+        long expectedVisits = 0;
+        for (int f = 0; f < friends.size(); f++) {
+            expectedVisits += Math.min(friendGraph.degree(friends.get(f)), fanOutCap);
+        }
+        IntIntMap counter = new IntIntMap((int) Math.min(expectedVisits, visitBudget));
+        // Себя, друзей и входящие заявки помечаем заранее, чтобы не искать их на каждом шаге обхода
+        counter.put((int) userId, EXCLUDED);
+        for (int f = 0; f < friends.size(); f++) {
+            counter.put(friends.get(f), EXCLUDED);
+        }
+        for (int r = 0; r < incoming.size(); r++) {
+            counter.put(incoming.get(r), EXCLUDED);
+        }
+
+        int visited = 0;
+        for (int f = 0; f < friends.size(); f++) {
+            IntSlice secondHop = friendGraph.neighbours(friends.get(f));
+            int step = secondHop.size() > fanOutCap ? (secondHop.size() + fanOutCap - 1) / fanOutCap : 1;
+            for (int i = 0; i < secondHop.size() && visited < visitBudget; i += step, visited++) {
+                counter.add(secondHop.get(i), 1);
+            }
+            if (visited >= visitBudget) {
+                break;
+            }
+        }
+
+        // Исключённые id с отрицательным счётчиком TopCounts пропускает сам; при равенстве выше меньший id
+        int[] top = TopCounts.topKeys(counter, MAX_SUGGESTIONS);
+        List<Suggestion> ranked = new ArrayList<>(top.length);
+        for (int candidate : top) {
+            ranked.add(new Suggestion(candidate, counter.get(candidate, 0)));
+        }
+        return List.copyOf(ranked);
+    }
+
+    private void store(long userId, List<Suggestion> suggestions) {
+        if (cache.size() >= cacheSize) {
+            // Записи сбрасываются точечно, устаревших в кэше нет: освобождаем место за счёт произвольной
+            Iterator<Long> victims = cache.keySet().iterator();
+            if (victims.hasNext()) {
+                victims.next();
+                victims.remove();
+            }
+        }
+        cache.put(userId, suggestions);
+    }
+
+    public record Suggestion(long userId, int mutualFriends) {
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Раскладывает пары (ключ, id) по растущим массивам ключей без упаковки id; порядок добавления сохраняется,
+ * так что при обходе пар по возрастанию id массивы получаются отсортированными.
+ */
+final class GroupedIds {
+    private final Map<Integer, int[]> groups = new HashMap<>();
+    private final IntIntMap sizes = new IntIntMap(1024);
+
+    void add(int key, int id) {
+        int size = sizes.get(key, 0);
+        int[] ids = groups.get(key);
+        if (ids == null || size == ids.length) {
+            ids = ids == null ? new int[4] : Arrays.copyOf(ids, size * 2);
+            groups.put(key, ids);
+        }
+        ids[size] = id;
+        sizes.put(key, size + 1);
+    }
+
+    void forEach(GroupConsumer consumer) {
+        groups.forEach((key, ids) -> consumer.accept(key, ids, sizes.get(key, 0)));
+    }
+
+    @FunctionalInterface
+    interface GroupConsumer {
+        void accept(int key, int[] ids, int size);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+/**
+ * Отображение int -> int с открытой адресацией для обходов графа: ни ключи, ни значения не упаковываются.
+ * Ключ -1 зарезервирован под пустую ячейку (id пользователей положительные).
+ */
+final class IntIntMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntIntMap(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(expectedKeys, 8) * 2 - 1) * 2;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int get(int key, int missing) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? missing : values[slot];
+    }
+
+    boolean containsKey(int key) {
+        return keys[find(key)] != EMPTY;
+    }
+
+    void put(int key, int value) {
+        // Слот берём до обращения к values: insert может пересоздать массивы
+        int slot = insert(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Кладёт значение, только если ключа ещё нет; возвращает true, если положило.
+     */
+    boolean putIfAbsent(int key, int value) {
+        int slot = find(key);
+        if (keys[slot] != EMPTY) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * Прибавляет delta (отсутствующий ключ считается нулём) и возвращает новое значение.
+     */
+    int add(int key, int delta) {
+        int slot = insert(key);
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * Удаляет ключ со сдвигом следующих за ним ячеек цепочки назад, без надгробий; возвращает true, если ключ был.
+     */
+    boolean remove(int key) {
+        int hole = find(key);
+        if (keys[hole] == EMPTY) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            // Ячейку можно перенести в дыру, только если её родная позиция не лежит между дырой и ней
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = 0;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int insert(int key) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
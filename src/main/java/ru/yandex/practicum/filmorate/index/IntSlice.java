@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+/**
+ * Окно array[from .. to) без копирования: так строки CSR отдаются читателям прямо из общего массива.
+ * Массив общий, изменять его через окно нельзя.
+ */
+record IntSlice(int[] array, int from, int to) {
+    static final IntSlice EMPTY = new IntSlice(new int[0], 0, 0);
+
+    static IntSlice of(int[] array) {
+        return array.length == 0 ? EMPTY : new IntSlice(array, 0, array.length);
+    }
+
+    int size() {
+        return to - from;
+    }
+
+    boolean isEmpty() {
+        return from == to;
+    }
+
+    int get(int index) {
+        return array[from + index];
+    }
+
+    /**
+     * Для отсортированного окна: есть ли в нём value.
+     */
+    boolean contains(int value) {
+        return Arrays.binarySearch(array, from, to, value) >= 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOfRange(array, from, to);
+    }
+}
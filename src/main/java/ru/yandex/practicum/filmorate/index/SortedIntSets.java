@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Пересечение отсортированных массивов id без повторов. Для списков сопоставимой длины - слияние
+ * за O(a + b); если один список много длиннее другого - галопирующий поиск за O(a * log(b / a)).
+ * Списки принимаются и окнами {@link IntSlice}, чтобы строки CSR не копировать.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class SortedIntSets {
+    // Во сколько раз длинный список должен превосходить короткий, чтобы галоп обгонял слияние
+    static final int GALLOP_RATIO = 16;
+
+    static int[] intersect(int[] first, int[] second) {
+        return intersect(IntSlice.of(first), IntSlice.of(second));
+    }
+
+    static int intersectionSize(int[] first, int[] second) {
+        return intersectionSize(IntSlice.of(first), IntSlice.of(second));
+    }
+
+    static int[] intersect(IntSlice first, IntSlice second) {
+        IntSlice small = first.size() <= second.size() ? first : second;
+        IntSlice large = small == first ? second : first;
+        int[] out = new int[small.size()];
+        int size = intersect(small, large, out);
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    static int intersectionSize(IntSlice first, IntSlice second) {
+        IntSlice small = first.size() <= second.size() ? first : second;
+        IntSlice large = small == first ? second : first;
+        return intersect(small, large, null);
+    }
+
+    private static int intersect(IntSlice small, IntSlice large, int[] out) {
+        if (small.isEmpty()) {
+            return 0;
+        }
+        return large.size() / small.size() >= GALLOP_RATIO
+                ? gallop(small, large, out)
+                : merge(small, large, out);
+    }
+
+    private static int merge(IntSlice small, IntSlice large, int[] out) {
+        int[] a = small.array();
+        int[] b = large.array();
+        int size = 0;
+        int i = small.from();
+        int j = large.from();
+        while (i < small.to() && j < large.to()) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[size] = a[i];
+                }
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    private static int gallop(IntSlice small, IntSlice large, int[] out) {
+        int[] a = small.array();
+        int[] b = large.array();
+        int end = large.to();
+        int size = 0;
+        int low = large.from();
+        for (int i = small.from(); i < small.to(); i++) {
+            int value = a[i];
+            // Шагаем 1, 2, 4, ... от предыдущей позиции, пока не перешагнём value, затем бинарный поиск
+            int step = 1;
+            int high = low;
+            while (high < end && b[high] < value) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int position = Arrays.binarySearch(b, low, Math.min(high + 1, end), value);
+            if (position >= 0) {
+                if (out != null) {
+                    out[size] = value;
+                }
+                size++;
+                low = position + 1;
+            } else {
+                low = -position - 1;
+            }
+            if (low >= end) {
+                break;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Отбор k ключей с наибольшими счётчиками из {@link IntIntMap} без упаковки: пара (счётчик, ключ)
+ * кодируется в long так, что больший long - лучше (больше счётчик, при равенстве меньше ключ),
+ * и держится в min-куче на массиве размера k.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class TopCounts {
+
+    /**
+     * Ключи с положительным счётчиком, лучшие первыми; не больше k.
+     */
+    static int[] topKeys(IntIntMap counts, int k) {
+        long[] heap = new long[Math.max(0, Math.min(k, counts.size()))];
+        int[] size = {0};
+        counts.forEach((key, count) -> {
+            if (count <= 0 || heap.length == 0) {
+                return;
+            }
+            long packed = ((long) count << 32) | (Integer.MAX_VALUE - key);
+            if (size[0] < heap.length) {
+                heap[size[0]] = packed;
+                siftUp(heap, size[0]++);
+            } else if (packed > heap[0]) {
+                heap[0] = packed;
+                siftDown(heap, 0, size[0]);
+            }
+        });
+
+        // Разбираем кучу с конца: каждый раз наименьший уходит в хвост результата
+        int[] keys = new int[size[0]];
+        for (int n = size[0]; n > 0; n--) {
+            keys[n - 1] = Integer.MAX_VALUE - (int) heap[0];
+            heap[0] = heap[n - 1];
+            siftDown(heap, 0, n - 1);
+        }
+        return keys;
+    }
+
+    private static void siftUp(long[] heap, int at) {
+        long value = heap[at];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[at] = heap[parent];
+            at = parent;
+        }
+        heap[at] = value;
+    }
+
+    private static void siftDown(long[] heap, int at, int size) {
+        long value = heap[at];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[at] = heap[child];
+            at = child;
+        }
+        heap[at] = value;
+    }
+}
@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Счётчики лайков по времени для /films/trending: у каждого фильма кольцевой буфер
+ * из 60 поминутных корзин (окно 1h) и 168 почасовых (окна 24h и 7d) и готовые суммы по каждому окну.
+ * По суммам держится отдельный рейтинг на окно, поэтому запрос берёт первые count фильмов
+ * и не обходит каталог. Раз в минуту фоновая задача сдвигает окна: вычитает из сумм корзины,
+ * вышедшие из окна, и выбрасывает фильмы без лайков за неделю.
+ */
+@Slf4j
+@Component
+public class TrendingFilmsIndex {
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOUR_BUCKETS = 168;
+    private static final long MINUTE_MILLIS = 60_000;
+    // Окна, которые считаются по почасовым корзинам
+    private static final List<TrendingWindow> HOURLY_WINDOWS = List.of(TrendingWindow.DAY, TrendingWindow.WEEK);
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final FilmRepository filmRepository;
+    // Корзины фильма меняются только внутри compute()/computeIfPresent() по его ключу
+    private final ConcurrentMap<Long, Buckets> films = new ConcurrentHashMap<>();
+    private final Map<TrendingWindow, ConcurrentSkipListSet<Entry>> rankings = new EnumMap<>(TrendingWindow.class);
+    private ScheduledExecutorService ticker;
+
+    public TrendingFilmsIndex(FilmRepository filmRepository) {
+        this.filmRepository = filmRepository;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            rankings.put(window, new ConcurrentSkipListSet<>(RANKING));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trending-films");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long now = System.currentTimeMillis();
+        ticker.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()),
+                MINUTE_MILLIS - now % MINUTE_MILLIS, MINUTE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    public void rebuild() {
+        films.clear();
+        rankings.values().forEach(ConcurrentSkipListSet::clear);
+        long now = System.currentTimeMillis();
+        Instant since = Instant.ofEpochMilli(now).minus(TrendingWindow.WEEK.getDuration());
+        filmRepository.forEachLikeSince(since, (filmId, likedAt) -> record(filmId, likedAt.toEpochMilli(), 1, now));
+        log.info("Trending index seeded with {} films", films.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        record(event.getFilmId(), event.getLikedAt().toEpochMilli(), event.isAdded() ? 1 : -1,
+                System.currentTimeMillis());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        films.computeIfPresent(event.getFilmId(), (filmId, buckets) -> {
+            buckets.unlink(filmId);
+            return null;
+        });
+    }
+
+    public List<Long> getTopFilmIds(TrendingWindow window, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (Entry entry : rankings.get(window)) {
+            if (ids.size() >= count) {
+                break;
+            }
+            ids.add(entry.filmId());
+        }
+        return ids;
+    }
+
+    void record(long filmId, long likedAtMillis, int delta, long nowMillis) {
+        // Лайк "из будущего" (часы БД впереди часов приложения) считается лайком текущей минуты
+        long nowMinute = nowMillis / MINUTE_MILLIS;
+        long minute = Math.min(likedAtMillis / MINUTE_MILLIS, nowMinute);
+        if (minute <= nowMinute - HOUR_BUCKETS * 60L) {
+            return;
+        }
+        films.compute(filmId, (id, buckets) -> {
+            if (buckets == null) {
+                if (delta < 0) {
+                    return null;
+                }
+                buckets = new Buckets(nowMinute);
+            }
+            buckets.add(id, minute, nowMinute, delta);
+            return buckets;
+        });
+    }
+
+    /**
+     * Сдвигает окна всех фильмов к минуте nowMillis и выбрасывает фильмы без лайков за неделю.
+     * Работа пропорциональна числу фильмов в индексе, но идёт раз в минуту, а не на каждый запрос.
+     */
+    void advance(long nowMillis) {
+        long nowMinute = nowMillis / MINUTE_MILLIS;
+        for (Long filmId : films.keySet()) {
+            films.computeIfPresent(filmId, (id, buckets) -> {
+                buckets.advance(id, nowMinute);
+                if (buckets.isExpired(nowMinute)) {
+                    buckets.unlink(id);
+                    return null;
+                }
+                return buckets;
+            });
+        }
+    }
+
+    private record Entry(int likes, long filmId) {
+    }
+
+    private final class Buckets {
+        private final int[] minuteCounts = new int[MINUTE_BUCKETS];
+        private final long[] minuteStamps = new long[MINUTE_BUCKETS];
+        private final int[] hourCounts = new int[HOUR_BUCKETS];
+        private final long[] hourStamps = new long[HOUR_BUCKETS];
+        // Суммы по окнам (индекс - ordinal окна) на минуту tick
+        private final int[] totals = new int[TrendingWindow.values().length];
+        private long tick;
+        private long lastMinute;
+
+        private Buckets(long tick) {
+            this.tick = tick;
+        }
+
+        void add(long filmId, long minute, long nowMinute, int delta) {
+            advance(filmId, nowMinute);
+            if (minute > tick - MINUTE_BUCKETS && addTo(minuteCounts, minuteStamps, minute, delta)) {
+                setTotal(filmId, TrendingWindow.HOUR, totals[TrendingWindow.HOUR.ordinal()] + delta);
+            }
+            long hour = minute / 60;
+            if (addTo(hourCounts, hourStamps, hour, delta)) {
+                for (TrendingWindow window : HOURLY_WINDOWS) {
+                    if (hour > tick / 60 - window.getDuration().toHours()) {
+                        setTotal(filmId, window, totals[window.ordinal()] + delta);
+                    }
+                }
+            }
+            lastMinute = Math.max(lastMinute, minute);
+        }
+
+        void advance(long filmId, long nowMinute) {
+            if (nowMinute <= tick) {
+                return;
+            }
+            setTotal(filmId, TrendingWindow.HOUR, shift(totals[TrendingWindow.HOUR.ordinal()],
+                    minuteCounts, minuteStamps, tick - MINUTE_BUCKETS, nowMinute - MINUTE_BUCKETS));
+            for (TrendingWindow window : HOURLY_WINDOWS) {
+                long hours = window.getDuration().toHours();
+                setTotal(filmId, window, shift(totals[window.ordinal()],
+                        hourCounts, hourStamps, tick / 60 - hours, nowMinute / 60 - hours));
+            }
+            tick = nowMinute;
+        }
+
+        boolean isExpired(long nowMinute) {
+            return lastMinute <= nowMinute - HOUR_BUCKETS * 60L;
+        }
+
+        void unlink(long filmId) {
+            for (TrendingWindow window : TrendingWindow.values()) {
+                setTotal(filmId, window, 0);
+            }
+        }
+
+        // Переставляет фильм в рейтинге окна, если сумма по нему изменилась
+        private void setTotal(long filmId, TrendingWindow window, int total) {
+            int old = totals[window.ordinal()];
+            if (old == total) {
+                return;
+            }
+            ConcurrentSkipListSet<Entry> ranking = rankings.get(window);
+            if (old > 0) {
+                ranking.remove(new Entry(old, filmId));
+            }
+            if (total > 0) {
+                ranking.add(new Entry(total, filmId));
+            }
+            totals[window.ordinal()] = total;
+        }
+
+        // Возвращает false, если корзину уже заняла более поздняя минута/час: лайк выпал из окна
+        private static boolean addTo(int[] counts, long[] stamps, long slot, int delta) {
+            int index = (int) (slot % counts.length);
+            if (stamps[index] != slot) {
+                if (delta < 0) {
+                    return false;
+                }
+                stamps[index] = slot;
+                counts[index] = 0;
+            }
+            counts[index] += delta;
+            return true;
+        }
+
+        // Граница окна сдвинулась с fromExclusive на toInclusive: корзины между ними из суммы уходят
+        private static int shift(int total, int[] counts, long[] stamps, long fromExclusive, long toInclusive) {
+            if (toInclusive - fromExclusive >= counts.length) {
+                return sumSince(counts, stamps, toInclusive);
+            }
+            for (long slot = fromExclusive + 1; slot <= toInclusive; slot++) {
+                int index = (int) (slot % counts.length);
+                if (stamps[index] == slot) {
+                    total -= counts[index];
+                }
+            }
+            return total;
+        }
+
+        private static int sumSince(int[] counts, long[] stamps, long exclusiveFrom) {
+            int sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (stamps[i] > exclusiveFrom) {
+                    sum += counts[i];
+                }
+            }
+            return sum;
+        }
+    }
+}
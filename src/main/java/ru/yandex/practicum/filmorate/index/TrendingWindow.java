@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.Duration;
+
+@Getter
+@RequiredArgsConstructor
+public enum TrendingWindow {
+    HOUR("1h", Duration.ofHours(1)),
+    DAY("24h", Duration.ofHours(24)),
+    WEEK("7d", Duration.ofDays(7));
+
+    private final String code;
+    private final Duration duration;
+
+    public static TrendingWindow fromCode(String code) {
+        for (TrendingWindow window : values()) {
+            if (window.code.equalsIgnoreCase(code)) {
+                return window;
+            }
+        }
+        throw new ValidationException("Unknown trending window: " + code + ", expected 1h, 24h or 7d");
+    }
+}
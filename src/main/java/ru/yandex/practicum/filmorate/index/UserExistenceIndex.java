@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.event.UserSavedEvent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Быстрые проверки существования пользователя по id и занятости email: битовая карта id и фильтр Блума
+ * email'ов, заполняемые при старте и по {@link UserSavedEvent}. Отрицательный ответ точный и не требует БД;
+ * положительный означает "возможно" и проверяется лёгким EXISTS-запросом. Откатанные вставки и старые
+ * email'ы после смены адреса остаются в структурах и дают только лишние EXISTS-запросы.
+ */
+@Slf4j
+@Component
+public class UserExistenceIndex {
+    private final UserRepository userRepository;
+    private final long expectedEmails;
+    private final double emailFalsePositiveRate;
+
+    private volatile BloomFilter emails;
+    private volatile IdBitmap ids = new IdBitmap(0);
+
+    private final Checks emailChecks = new Checks("email");
+    private final Checks idChecks = new Checks("id");
+
+    public UserExistenceIndex(UserRepository userRepository,
+                              @Value("${filmorate.users.email-filter.expected-insertions:1000000}") long expectedEmails,
+                              @Value("${filmorate.users.email-filter.false-positive-rate:0.01}")
+                              double emailFalsePositiveRate) {
+        this.userRepository = userRepository;
+        this.expectedEmails = expectedEmails;
+        this.emailFalsePositiveRate = emailFalsePositiveRate;
+        this.emails = new BloomFilter(expectedEmails, emailFalsePositiveRate);
+        Metrics.gauge("filmorate.users.email.filter.expected_false_positive_rate", this,
+                index -> index.emails.expectedFalsePositiveRate());
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        // Запас в два раза от текущего числа пользователей, чтобы доля ложных срабатываний не росла сразу
+        BloomFilter rebuiltEmails = new BloomFilter(
+                Math.max(expectedEmails, 2L * userRepository.countUsers()), emailFalsePositiveRate);
+        IdBitmap rebuiltIds = new IdBitmap(0);
+        userRepository.forEachUserKey((userId, email) -> {
+            rebuiltEmails.put(email);
+            rebuiltIds.set(userId);
+        });
+        emails = rebuiltEmails;
+        ids = rebuiltIds;
+        log.info("User existence index loaded: email filter {} bits, {} hash functions",
+                rebuiltEmails.bitCount(), rebuiltEmails.hashCount());
+    }
+
+    @EventListener
+    public void onUserSaved(UserSavedEvent event) {
+        emails.put(event.getEmail());
+        ids.set(event.getUserId());
+    }
+
+    public boolean userExists(long userId) {
+        if (!ids.get(userId)) {
+            idChecks.negative();
+            return false;
+        }
+        return idChecks.confirm(userRepository.existsById(userId));
+    }
+
+    public boolean emailExists(String email) {
+        if (!emails.mightContain(email)) {
+            emailChecks.negative();
+            return false;
+        }
+        return emailChecks.confirm(userRepository.existsByEmail(email));
+    }
+
+    /**
+     * Счётчики исходов проверки и наблюдаемая доля ложных срабатываний: ответы "возможно",
+     * не подтверждённые БД, среди всех проверок отсутствующих значений.
+     */
+    private static final class Checks {
+        private final Counter negatives;
+        private final Counter confirmed;
+        private final Counter falsePositives;
+
+        Checks(String filter) {
+            String prefix = "filmorate.users." + filter + ".filter.";
+            negatives = Metrics.counter(prefix + "negatives");
+            confirmed = Metrics.counter(prefix + "confirmed");
+            falsePositives = Metrics.counter(prefix + "false_positives");
+            Metrics.gauge(prefix + "false_positive_rate", this, Checks::falsePositiveRate);
+        }
+
+        void negative() {
+            negatives.increment();
+        }
+
+        boolean confirm(boolean exists) {
+            (exists ? confirmed : falsePositives).increment();
+            return exists;
+        }
+
+        double falsePositiveRate() {
+            double absent = negatives.count() + falsePositives.count();
+            return absent == 0 ? 0 : falsePositives.count() / absent;
+        }
+    }
+
+    /**
+     * Растущая битовая карта id. Запись под блокировкой (вставки редки), чтение без неё.
+     */
+    private static final class IdBitmap {
+        private volatile AtomicLongArray words;
+
+        IdBitmap(int capacityWords) {
+            words = new AtomicLongArray(Math.max(capacityWords, 1));
+        }
+
+        boolean get(long id) {
+            AtomicLongArray current = words;
+            long word = id >>> 6;
+            return id >= 0 && word < current.length() && (current.get((int) word) & (1L << id)) != 0;
+        }
+
+        synchronized void set(long id) {
+            int word = Math.toIntExact(id >>> 6);
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                current = grown;
+            }
+            current.set(word, current.get(word) | (1L << id));
+        }
+    }
+}
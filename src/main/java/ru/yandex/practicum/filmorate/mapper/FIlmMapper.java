@@ -19,7 +19,7 @@ public class FIlmMapper {
         film.setGenres(request.getGenres());
         film.setReleaseDate(request.getReleaseDate());
         film.setMpa(request.getMpa());
-        log.info("Mapping film, mpa: {}", request.getMpa());
+        log.debug("Mapping film, mpa: {}", request.getMpa());
         return film;
     }
 
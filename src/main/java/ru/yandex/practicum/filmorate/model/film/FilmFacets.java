@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model.film;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Set;
+
+/**
+ * Атрибуты фильма, по которым фильтруется рейтинг популярности.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FilmFacets {
+    private final int likeCount;
+    private final int mpaId;
+    private final int releaseYear;
+    private final Set<Integer> genreIds;
+}
@@ -1,19 +1,14 @@
 package ru.yandex.practicum.filmorate.model.film;
 
-import lombok.Data;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Неизменяемый: общие экземпляры жанров раздаются из {@link ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry}.
+ */
 @Slf4j
-@Data
+@Value
 public class Genre {
-    private int id;
-    private String name;
-
-    public Genre(int id, String name) {
-        this.id = id;
-        this.name = name;
-    }
-
-    public Genre() {
-    }
+    int id;
+    String name;
 }
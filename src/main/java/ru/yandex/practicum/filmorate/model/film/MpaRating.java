@@ -1,21 +1,15 @@
 package ru.yandex.practicum.filmorate.model.film;
 
-import lombok.Data;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Неизменяемый: общие экземпляры рейтингов раздаются из {@link ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry}.
+ */
 @Slf4j
-@Data
+@Value
 public class MpaRating {
-    private int id;
-    private String name;
-    private String description;
-
-    public MpaRating() {
-    }
-
-    public MpaRating(int id, String name, String description) {
-        this.id = id;
-        this.name = name;
-        this.description = description;
-    }
-}
\ No newline at end of file
+    int id;
+    String name;
+    String description;
+}
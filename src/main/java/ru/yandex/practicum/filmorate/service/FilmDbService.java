@@ -7,9 +7,15 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.*;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.LikeResultDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.index.TrendingWindow;
 import ru.yandex.practicum.filmorate.mapper.FIlmMapper;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.film.Genre;
@@ -18,35 +24,46 @@ import ru.yandex.practicum.filmorate.model.film.Genre;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @Primary
 public class FilmDbService {
-    private final UserRepository userRepository;
     private final FilmRepository filmRepository;
-    private final MpaRepository mpaRepository;
-    private final GenreRepository genreRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final FilmPopularityIndex popularityIndex;
+    private final TrendingFilmsIndex trendingIndex;
+    private final FilmSimilarityIndex similarityIndex;
 
     @Autowired
     public FilmDbService(
-            UserRepository userRepository,
             FilmRepository filmRepository,
-            MpaRepository mpaRepository,
-            GenreRepository genreRepository) {
-        this.userRepository = userRepository;
+            ReferenceDataRegistry referenceData,
+            FilmPopularityIndex popularityIndex,
+            TrendingFilmsIndex trendingIndex,
+            FilmSimilarityIndex similarityIndex) {
         this.filmRepository = filmRepository;
-        this.mpaRepository = mpaRepository;
-        this.genreRepository = genreRepository;
+        this.referenceData = referenceData;
+        this.popularityIndex = popularityIndex;
+        this.trendingIndex = trendingIndex;
+        this.similarityIndex = similarityIndex;
     }
 
 
     public Collection<FilmDto> getAllFilms() {
-        log.info("Getting all films");
-        return filmRepository.getFilms().stream()
-                .map(FIlmMapper::mapToFilmDto)
-                .collect(Collectors.toList());
+        return getFilmsPage(null, null).getItems();
+    }
+
+    public PageDto<FilmDto> getFilmsPage(String after, Integer limit) {
+        log.info("Getting films after cursor {} with limit {}", after, limit);
+        return KeysetPager.page(after, limit, filmRepository::getFilmsPage, Film::getId, FIlmMapper::mapToFilmDto);
+    }
+
+    public void streamAllFilms(Consumer<FilmDto> consumer) {
+        log.info("Streaming all films");
+        filmRepository.streamFilms(film -> consumer.accept(FIlmMapper.mapToFilmDto(film)));
     }
 
     public FilmDto getFilmById(long filmId) {
@@ -57,7 +74,7 @@ public class FilmDbService {
     }
 
     public FilmDto addFilm(NewFilmRequest request) {
-        if (!mpaRepository.existsById(request.getMpa().getId())) {
+        if (!referenceData.mpaExists(request.getMpa().getId())) {
             throw new NotFoundException("MPA rating with id " + request.getMpa().getId() + " not found");
         }
 
@@ -66,11 +83,7 @@ public class FilmDbService {
                     .map(Genre::getId)
                     .collect(Collectors.toSet());
 
-            Set<Integer> existingGenreIds = genreRepository.findAllExistingIds(genreIds);
-
-            Set<Integer> missingGenreIds = genreIds.stream()
-                    .filter(id -> !existingGenreIds.contains(id))
-                    .collect(Collectors.toSet());
+            Set<Integer> missingGenreIds = referenceData.findMissingGenreIds(genreIds);
 
             if (!missingGenreIds.isEmpty()) {
                 throw new NotFoundException("Genres with ids " + missingGenreIds + " not found");
@@ -83,49 +96,40 @@ public class FilmDbService {
     }
 
     public FilmDto updateFilm(long filmId, UpdateFilmRequest request) {
-        Film film = filmRepository.getFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException("Film not found with id: " + filmId));
-
-        if (request.getName() != null) film.setName(request.getName());
-        if (request.getDescription() != null) film.setDescription(request.getDescription());
-        if (request.getReleaseDate() != null) film.setReleaseDate(request.getReleaseDate());
-        if (request.getDuration() != null) film.setDuration(request.getDuration());
-        if (request.getMpa() != null) film.setMpa(request.getMpa());
-        if (request.getGenres() != null) film.setGenres(request.getGenres());
-
-        filmRepository.updateFilm(film);
+        Film patch = new Film();
+        patch.setId(filmId);
+        patch.setName(request.getName());
+        patch.setDescription(request.getDescription());
+        patch.setReleaseDate(request.getReleaseDate());
+        patch.setDuration(request.getDuration());
+        patch.setMpa(request.getMpa());
+        patch.setGenres(request.getGenres());
+
+        // Незаданные поля остаются как в БД, без genres в запросе набор жанров не трогаем;
+        // отсутствие фильма репозиторий видит по результату самого UPDATE
+        Film film = filmRepository.patchFilm(patch, request.getGenres() != null);
         return FIlmMapper.mapToFilmDto(film);
     }
 
-    public FilmDto addLike(long filmId, long userId) {
-        // Проверяем существование фильма и пользователя
-        filmRepository.getFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException("Film not found"));
-        userRepository.getUser(userId)
-                .orElseThrow(() -> new NotFoundException("User not found"));
-
-        filmRepository.addLike(filmId, userId);
-
-        return filmRepository.getFilmById(filmId)
-                .map(FIlmMapper::mapToFilmDto)
-                .orElseThrow(() -> new NotFoundException("Film not found after like"));
+    // Лайк меняет только связь фильм-пользователь, поэтому в ответе только её состояние и число лайков
+    public LikeResultDto addLike(long filmId, long userId) {
+        FilmRepository.LikeResult result = filmRepository.addLike(filmId, userId);
+        return new LikeResultDto(filmId, userId, true, result.changed(), result.likeCount());
     }
 
-    public FilmDto removeLike(long filmId, long userId) {
-        Film film = filmRepository.getFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException("Film with id " + filmId + " not found"));
-
-        userRepository.getUser(userId)
-                .orElseThrow(() -> new NotFoundException("User with id " + userId + " not found"));
-
-        film.getLikes().remove(userId);
-        filmRepository.updateFilm(film);
-        log.info("User {} removed like from film {}", userId, filmId);
-        return FIlmMapper.mapToFilmDto(film);
+    public LikeResultDto removeLike(long filmId, long userId) {
+        FilmRepository.LikeResult result = filmRepository.removeLike(filmId, userId);
+        return new LikeResultDto(filmId, userId, false, result.changed(), result.likeCount());
     }
 
     public List<FilmDto> getMostPopularFilms(Integer count) {
-        List<Film> films = filmRepository.getPopularFilms(count);
+        return getMostPopularFilms(count, null, null, null);
+    }
+
+    public List<FilmDto> getMostPopularFilms(Integer count, Integer genreId, Integer mpaId, Integer year) {
+        int limit = (count != null && count > 0) ? count : 10;
+        List<Film> films = filmRepository.getFilmsByIds(
+                popularityIndex.getTopFilmIds(limit, genreId, mpaId, year));
 
         if (films.isEmpty()) {
             log.warn("No films with likes found");
@@ -135,4 +139,21 @@ public class FilmDbService {
                 .map(FIlmMapper::mapToFilmDto)
                 .collect(Collectors.toList());
     }
+
+    public List<FilmDto> getTrendingFilms(String window, Integer count) {
+        int limit = (count != null && count > 0) ? count : 10;
+        TrendingWindow trendingWindow = TrendingWindow.fromCode(window);
+        log.info("Getting {} trending films for window {}", limit, trendingWindow.getCode());
+        return filmRepository.getFilmsByIds(trendingIndex.getTopFilmIds(trendingWindow, limit)).stream()
+                .map(FIlmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
+
+    public List<FilmDto> getSimilarFilms(long filmId, Integer limit) {
+        getFilmById(filmId);
+        int size = Math.min((limit != null && limit > 0) ? limit : 10, similarityIndex.getMaxSimilarFilms());
+        return filmRepository.getFilmsByIds(similarityIndex.getSimilarFilmIds(filmId, size)).stream()
+                .map(FIlmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.mapper.FIlmMapper;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт фильмов из NDJSON: строки проверяются по справочникам в памяти, а валидные фильмы
+ * пишутся JDBC-батчами, по commit-size фильмов на транзакцию.
+ */
+@Slf4j
+@Service
+public class FilmImportService extends NdjsonImportService<Film> {
+    private final FilmRepository filmRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public FilmImportService(FilmRepository filmRepository,
+                             ReferenceDataRegistry referenceData,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${filmorate.films.bulk.batch-size:1000}") int batchSize,
+                             @Value("${filmorate.films.bulk.commit-size:10000}") int commitSize) {
+        super(objectMapper, validator, commitSize, "films");
+        this.filmRepository = filmRepository;
+        this.referenceData = referenceData;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    public void importFilms(InputStream input, Consumer<ImportResultDto> results) throws IOException {
+        importLines(input, results);
+    }
+
+    @Override
+    protected Film parse(String text) {
+        NewFilmRequest request = readValid(text, NewFilmRequest.class);
+        if (request.getMpa() == null) {
+            throw new RejectedLineException("MPA rating is required");
+        }
+        if (!referenceData.mpaExists(request.getMpa().getId())) {
+            throw new RejectedLineException("MPA rating with id " + request.getMpa().getId() + " not found");
+        }
+        if (request.getGenres() != null && !request.getGenres().isEmpty()) {
+            Set<Integer> missingGenreIds = referenceData.findMissingGenreIds(request.getGenres().stream()
+                    .map(Genre::getId)
+                    .collect(Collectors.toSet()));
+            if (!missingGenreIds.isEmpty()) {
+                throw new RejectedLineException("Genres with ids " + missingGenreIds + " not found");
+            }
+        }
+        return FIlmMapper.mapToFilm(request);
+    }
+
+    @Override
+    protected void save(List<Line<Film>> lines) {
+        List<Film> films = lines.stream().map(Line::getValue).collect(Collectors.toList());
+        try {
+            transactionTemplate.executeWithoutResult(status -> filmRepository.addFilms(films, batchSize));
+            lines.forEach(line -> line.created(line.getValue().getId()));
+        } catch (RuntimeException e) {
+            log.warn("Import chunk of {} films failed, retrying one by one", films.size(), e);
+            lines.forEach(this::saveSingle);
+        }
+    }
+
+    private void saveSingle(Line<Film> line) {
+        Film film = line.getValue();
+        film.setId(null);
+        try {
+            transactionTemplate.executeWithoutResult(status -> filmRepository.addFilms(List.of(film), 1));
+            line.created(film.getId());
+        } catch (RuntimeException e) {
+            line.reject("Failed to save film: " + e.getMessage());
+        }
+    }
+}
@@ -3,7 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.GenreRepository;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.GenreMapper;
@@ -15,16 +15,16 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class GenreService {
-    private final GenreRepository genreRepository;
+    private final ReferenceDataRegistry referenceData;
 
     public List<GenreDto> getAllGenres() {
-        return genreRepository.findAll().stream()
+        return referenceData.getGenres().stream()
                 .map(GenreMapper::mapToGenreDto)
                 .collect(Collectors.toList());
     }
 
     public GenreDto getGenreById(int id) {
-        return genreRepository.findById(id)
+        return referenceData.findGenre(id)
                 .map(GenreMapper::mapToGenreDto)
                 .orElseThrow(() -> new NotFoundException("Genre not found with id: " + id));
     }
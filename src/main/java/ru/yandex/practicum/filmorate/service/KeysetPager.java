@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Keyset-пагинация по возрастанию id: из хранилища берётся на одну запись больше страницы, чтобы понять,
+ * есть ли следующая, а курсор указывает на последнюю отданную запись.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class KeysetPager {
+
+    @FunctionalInterface
+    interface PageQuery<E> {
+        List<E> fetch(long afterId, int limit);
+    }
+
+    static <E, T> PageDto<T> page(String after, Integer limit, PageQuery<E> query,
+                                  ToLongFunction<E> idOf, Function<E, T> mapper) {
+        long afterId = CursorMapper.decode(after);
+        int pageSize = PageDto.resolveLimit(limit);
+
+        List<E> rows = query.fetch(afterId, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = CursorMapper.encode(idOf.applyAsLong(rows.getLast()));
+        }
+        return new PageDto<>(rows.stream()
+                .map(mapper)
+                .collect(Collectors.toList()), nextCursor);
+    }
+}
@@ -3,7 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.MpaRepository;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.dto.MpaDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.MpaMapper;
@@ -15,16 +15,16 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class MpaService {
-    private final MpaRepository mpaRepository;
+    private final ReferenceDataRegistry referenceData;
 
     public List<MpaDto> getAllMpa() {
-        return mpaRepository.findAll().stream()
+        return referenceData.getMpaRatings().stream()
                 .map(MpaMapper::mapToMpaDto)
                 .collect(Collectors.toList());
     }
 
     public MpaDto getMpaById(int id) {
-        return mpaRepository.findById(id)
+        return referenceData.findMpa(id)
                 .map(MpaMapper::mapToMpaDto)
                 .orElseThrow(() -> new NotFoundException("MPA rating not found with id: " + id));
     }
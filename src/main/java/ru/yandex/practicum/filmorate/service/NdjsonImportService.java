@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Общий цикл импорта NDJSON: строки разбираются и проверяются по одной и копятся порциями по chunkSize
+ * (вместе с отклонёнными, чтобы память была ограничена порцией), валидные сохраняются {@link #save},
+ * после чего результаты порции отдаются в порядке строк.
+ */
+@Slf4j
+public abstract class NdjsonImportService<T> {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final String entityName;
+
+    private final Counter imported;
+    private final Counter rejected;
+
+    protected NdjsonImportService(ObjectMapper objectMapper, Validator validator, int chunkSize, String entityName) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.entityName = entityName;
+        this.imported = Metrics.counter("filmorate." + entityName + ".bulk.imported");
+        this.rejected = Metrics.counter("filmorate." + entityName + ".bulk.rejected");
+    }
+
+    /**
+     * Разбирает строку в сохраняемый объект; для отказа бросает {@link RejectedLineException}.
+     */
+    protected abstract T parse(String text);
+
+    /**
+     * Сохраняет валидные строки порции: каждой проставляет id или ошибку.
+     */
+    protected abstract void save(List<Line<T>> lines);
+
+    public void importLines(InputStream input, Consumer<ImportResultDto> results) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Line<T>> chunk = new ArrayList<>();
+        long lineNumber = 0;
+        long[] totals = new long[2];
+
+        String text;
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            if (text.isBlank()) {
+                continue;
+            }
+            Line<T> line = new Line<>(lineNumber);
+            try {
+                line.value = parse(text);
+            } catch (RejectedLineException e) {
+                line.error = e.getMessage();
+            }
+            chunk.add(line);
+            if (chunk.size() >= chunkSize) {
+                flush(chunk, results, totals);
+            }
+        }
+        flush(chunk, results, totals);
+
+        imported.increment(totals[0]);
+        rejected.increment(totals[1]);
+        log.info("Import of {} finished: {} lines, {} imported, {} rejected",
+                entityName, lineNumber, totals[0], totals[1]);
+    }
+
+    protected <R> R readValid(String text, Class<R> type) {
+        R request;
+        try {
+            request = objectMapper.readValue(text, type);
+        } catch (JsonProcessingException e) {
+            throw new RejectedLineException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        Set<ConstraintViolation<R>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new RejectedLineException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return request;
+    }
+
+    private void flush(List<Line<T>> chunk, Consumer<ImportResultDto> results, long[] totals) {
+        List<Line<T>> valid = chunk.stream()
+                .filter(line -> line.error == null)
+                .collect(Collectors.toList());
+        if (!valid.isEmpty()) {
+            save(valid);
+        }
+        for (Line<T> line : chunk) {
+            if (line.error != null) {
+                results.accept(ImportResultDto.failed(line.number, line.error));
+                totals[1]++;
+            } else {
+                results.accept(ImportResultDto.created(line.number, line.id));
+                totals[0]++;
+            }
+        }
+        chunk.clear();
+    }
+
+    protected static final class Line<T> {
+        private final long number;
+        private T value;
+        private Long id;
+        private String error;
+
+        private Line(long number) {
+            this.number = number;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public void created(long id) {
+            this.id = id;
+        }
+
+        public void reject(String error) {
+            this.error = error;
+        }
+    }
+
+    protected static class RejectedLineException extends RuntimeException {
+        public RejectedLineException(String message) {
+            super(message);
+        }
+    }
+}
@@ -4,32 +4,76 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
 import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
 import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dto.CommonFriendsCountDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDto;
 import ru.yandex.practicum.filmorate.dto.NewUserRequest;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.UpdateUserRequest;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.CommonFriendsEngine;
+import ru.yandex.practicum.filmorate.index.FilmRecommendationEngine;
+import ru.yandex.practicum.filmorate.index.FriendFilmFeed;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendPathFinder;
+import ru.yandex.practicum.filmorate.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.index.UserExistenceIndex;
+import ru.yandex.practicum.filmorate.mapper.FIlmMapper;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.user.User;
 
 import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @Primary
 public class UserDbService {
+    private static final int DEFAULT_PATH_DEPTH = 6;
+    private static final int MAX_PATH_DEPTH = 12;
+
     private final UserRepository userRepository;
     private final FriendshipRepository friendshipRepository;
+    private final FriendGraph friendGraph;
+    private final CommonFriendsEngine commonFriendsEngine;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final FriendPathFinder friendPathFinder;
+    private final UserExistenceIndex userExistenceIndex;
+    private final FilmRepository filmRepository;
+    private final FilmRecommendationEngine filmRecommendationEngine;
+    private final FriendFilmFeed friendFilmFeed;
 
     @Autowired
     public UserDbService(UserRepository userRepository,
-                         FriendshipRepository friendshipRepository) {
+                         FriendshipRepository friendshipRepository,
+                         FriendGraph friendGraph,
+                         CommonFriendsEngine commonFriendsEngine,
+                         FriendSuggestionEngine friendSuggestionEngine,
+                         FriendPathFinder friendPathFinder,
+                         UserExistenceIndex userExistenceIndex,
+                         FilmRepository filmRepository,
+                         FilmRecommendationEngine filmRecommendationEngine,
+                         FriendFilmFeed friendFilmFeed) {
         this.userRepository = userRepository;
         this.friendshipRepository = friendshipRepository;
+        this.friendGraph = friendGraph;
+        this.commonFriendsEngine = commonFriendsEngine;
+        this.friendSuggestionEngine = friendSuggestionEngine;
+        this.friendPathFinder = friendPathFinder;
+        this.userExistenceIndex = userExistenceIndex;
+        this.filmRepository = filmRepository;
+        this.filmRecommendationEngine = filmRecommendationEngine;
+        this.friendFilmFeed = friendFilmFeed;
     }
 
     public UserDto createUser(NewUserRequest request) {
@@ -49,9 +93,11 @@ public class UserDbService {
     }
 
     public List<UserDto> getAllUsers() {
-        return userRepository.getUsers().stream()
-                .map(UserMapper::mapToUserDto)
-                .collect(Collectors.toList());
+        return getUsersPage(null, null).getItems();
+    }
+
+    public PageDto<UserDto> getUsersPage(String after, Integer limit) {
+        return KeysetPager.page(after, limit, userRepository::getUsersPage, User::getId, UserMapper::mapToUserDto);
     }
 
     public UserDto updateUser(long userId, UpdateUserRequest request) {
@@ -90,14 +136,14 @@ public class UserDbService {
 
     // Friendship queries
     public List<UserDto> getFriends(long userId) {
-        getUserOrThrow(userId);
-        return friendshipRepository.getFriends(userId).stream()
+        ensureUserExists(userId);
+        return userRepository.getUsersByIds(friendGraph.getFriendIds(userId)).stream()
                 .map(UserMapper::mapToUserDto)
                 .collect(Collectors.toList());
     }
 
     public List<UserDto> getPendingRequests(long userId) {
-        getUserOrThrow(userId);
+        ensureUserExists(userId);
         return friendshipRepository.getPendingRequests(userId).stream()
                 .map(UserMapper::mapToUserDto)
                 .collect(Collectors.toList());
@@ -105,11 +151,99 @@ public class UserDbService {
 
     public List<UserDto> getCommonFriends(long userId, long otherId) {
         validateUsers(userId, otherId);
-        return friendshipRepository.getCommonFriends(userId, otherId).stream()
+        return userRepository.getUsersByIds(commonFriendsEngine.getCommonFriendIds(userId, otherId)).stream()
+                .map(UserMapper::mapToUserDto)
+                .collect(Collectors.toList());
+    }
+
+    public List<CommonFriendsCountDto> countCommonFriends(long userId, List<Long> otherIds) {
+        ensureUserExists(userId);
+        if (otherIds.size() > PageDto.MAX_LIMIT) {
+            throw new ValidationException("At most " + PageDto.MAX_LIMIT + " users per request");
+        }
+        return commonFriendsEngine.countCommonFriends(userId, otherIds).entrySet().stream()
+                .map(entry -> new CommonFriendsCountDto(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    public List<FriendSuggestionDto> getFriendSuggestions(long userId, Integer limit) {
+        ensureUserExists(userId);
+        int count = limit == null ? 10 : limit;
+        if (count <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        List<FriendSuggestionEngine.Suggestion> suggestions =
+                friendSuggestionEngine.suggest(userId, Math.min(count, FriendSuggestionEngine.MAX_SUGGESTIONS));
+        Map<Long, User> users = userRepository.getUsersByIds(suggestions.stream()
+                        .map(FriendSuggestionEngine.Suggestion::userId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+        return suggestions.stream()
+                .filter(suggestion -> users.containsKey(suggestion.userId()))
+                .map(suggestion -> new FriendSuggestionDto(
+                        UserMapper.mapToUserDto(users.get(suggestion.userId())), suggestion.mutualFriends()))
+                .collect(Collectors.toList());
+    }
+
+    public List<UserDto> getFriendshipPath(long userId, long otherId, Integer maxDepth) {
+        ensureUserExists(userId);
+        ensureUserExists(otherId);
+        int depth = maxDepth == null ? DEFAULT_PATH_DEPTH : maxDepth;
+        if (depth <= 0 || depth > MAX_PATH_DEPTH) {
+            throw new ValidationException("maxDepth must be between 1 and " + MAX_PATH_DEPTH);
+        }
+        List<Long> path = friendPathFinder.findPath(userId, otherId, depth)
+                .orElseThrow(() -> new NotFoundException(
+                        "No friendship path from user " + userId + " to " + otherId + " within " + depth + " steps"));
+        return userRepository.getUsersByIds(path).stream()
                 .map(UserMapper::mapToUserDto)
                 .collect(Collectors.toList());
     }
 
+    public List<FilmDto> getFilmRecommendations(long userId, Integer limit) {
+        ensureUserExists(userId);
+        int count = limit == null ? 10 : limit;
+        if (count <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        return filmRepository.getFilmsByIds(filmRecommendationEngine.recommend(userId, count)).stream()
+                .map(FIlmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
+
+    public List<FilmDto> getPopularFilmsAmongFriends(long userId, Integer count) {
+        ensureUserExists(userId);
+        int size = count == null ? 10 : count;
+        if (size <= 0) {
+            throw new ValidationException("Count must be positive");
+        }
+        return filmRepository.getFilmsByIds(friendFilmFeed.getPopularFilmIds(userId, size)).stream()
+                .map(FIlmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
+
+    public PageDto<FilmDto> getLikedFilmsPage(long userId, String after, Integer limit) {
+        ensureUserExists(userId);
+        return KeysetPager.page(after, limit,
+                (afterId, pageLimit) -> filmRepository.getLikedFilmsPage(userId, afterId, pageLimit),
+                Film::getId, FIlmMapper::mapToFilmDto);
+    }
+
+    /**
+     * Id из filmIds, которые пользователь лайкнул, в порядке запроса.
+     */
+    public List<Long> getLikedFilmIds(long userId, List<Long> filmIds) {
+        ensureUserExists(userId);
+        if (filmIds.size() > PageDto.MAX_LIMIT) {
+            throw new ValidationException("At most " + PageDto.MAX_LIMIT + " films per request");
+        }
+        Set<Long> liked = filmRepository.findLikedFilmIds(userId, new HashSet<>(filmIds));
+        return filmIds.stream()
+                .filter(liked::contains)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
     // Validation methods
     private void validateUserRequest(NewUserRequest request) {
         if (request.getEmail() == null || request.getEmail().isBlank()) {
@@ -127,8 +261,8 @@ public class UserDbService {
         if (userId == friendId) {
             throw new ValidationException("Cannot perform operation with yourself");
         }
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        ensureUserExists(userId);
+        ensureUserExists(friendId);
     }
 
     private User getUserOrThrow(long userId) {
@@ -136,8 +270,14 @@ public class UserDbService {
                 .orElseThrow(() -> new NotFoundException("User not found"));
     }
 
+    private void ensureUserExists(long userId) {
+        if (!userExistenceIndex.userExists(userId)) {
+            throw new NotFoundException("User not found");
+        }
+    }
+
     private void checkEmailUniqueness(String email) {
-        if (userRepository.findByEmail(email).isPresent()) {
+        if (userExistenceIndex.emailExists(email)) {
             throw new ValidationException("Email already exists");
         }
     }
@@ -161,8 +301,8 @@ public class UserDbService {
         if (userId == friendId) {
             throw new ValidationException("Cannot add yourself as friend");
         }
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        ensureUserExists(userId);
+        ensureUserExists(friendId);
     }
 
 
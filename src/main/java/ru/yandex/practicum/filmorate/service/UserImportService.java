@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+import ru.yandex.practicum.filmorate.dto.NewUserRequest;
+import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт пользователей из NDJSON. Уникальность email проверяется на пачку целиком: повторы внутри
+ * пачки отсеиваются в памяти, занятые адреса - одним запросом, а гонку с параллельной вставкой ловит
+ * уникальный индекс, после чего пачка досохраняется по одной записи.
+ */
+@Slf4j
+@Service
+public class UserImportService extends NdjsonImportService<User> {
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserImportService(UserRepository userRepository,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${filmorate.users.bulk.batch-size:1000}") int batchSize) {
+        super(objectMapper, validator, batchSize, "users");
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void importUsers(InputStream input, Consumer<ImportResultDto> results) throws IOException {
+        importLines(input, results);
+    }
+
+    @Override
+    protected User parse(String text) {
+        User user = UserMapper.mapToUser(readValid(text, NewUserRequest.class));
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        return user;
+    }
+
+    @Override
+    protected void save(List<Line<User>> lines) {
+        Map<String, Line<User>> byEmail = new HashMap<>();
+        List<Line<User>> candidates = new ArrayList<>();
+        for (Line<User> line : lines) {
+            Line<User> first = byEmail.putIfAbsent(line.getValue().getEmail(), line);
+            if (first != null) {
+                line.reject("Email duplicates line " + first.getNumber());
+            } else {
+                candidates.add(line);
+            }
+        }
+
+        Set<String> existing = userRepository.findExistingEmails(byEmail.keySet());
+        List<Line<User>> toInsert = new ArrayList<>();
+        for (Line<User> line : candidates) {
+            if (existing.contains(line.getValue().getEmail())) {
+                line.reject("Email already exists");
+            } else {
+                toInsert.add(line);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        List<User> users = toInsert.stream().map(Line::getValue).collect(Collectors.toList());
+        try {
+            transactionTemplate.executeWithoutResult(status -> userRepository.addUsers(users));
+            toInsert.forEach(line -> line.created(line.getValue().getId()));
+        } catch (RuntimeException e) {
+            log.warn("Import batch of {} users failed, retrying one by one: {}", users.size(), e.getMessage());
+            toInsert.forEach(this::saveSingle);
+        }
+    }
+
+    private void saveSingle(Line<User> line) {
+        User user = line.getValue();
+        user.setId(null);
+        try {
+            transactionTemplate.executeWithoutResult(status -> userRepository.addUsers(List.of(user)));
+            line.created(user.getId());
+        } catch (DuplicateKeyException e) {
+            line.reject("Email already exists");
+        } catch (RuntimeException e) {
+            line.reject("Failed to save user: " + e.getMessage());
+        }
+    }
+}
@@ -23,7 +23,8 @@ CREATE TABLE IF NOT EXISTS films (
     description   VARCHAR(200),
     release_date  DATE         NOT NULL,
     duration      INT          NOT NULL CHECK (duration > 0),
-    mpa_rating_id INT REFERENCES mpa_rating (mpa_id)
+    mpa_rating_id INT REFERENCES mpa_rating (mpa_id),
+    like_count    INT          NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS friendship (
@@ -47,5 +48,49 @@ CREATE TABLE IF NOT EXISTS film_genre (
 CREATE TABLE IF NOT EXISTS film_likes (
     film_id INT REFERENCES films (film_id) ON DELETE CASCADE,
     user_id INT REFERENCES users (user_id) ON DELETE CASCADE,
+    liked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (film_id, user_id)
-);
\ No newline at end of file
+);
+
+-- Денормализованный счётчик лайков для /films/popular (для баз, созданных до его появления)
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_films_like_count ON films (like_count DESC, film_id);
+
+-- Индексы для /films/popular с фильтрами по жанру, MPA и году
+CREATE INDEX IF NOT EXISTS idx_film_genre_genre ON film_genre (genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_mpa_like_count ON films (mpa_rating_id, like_count DESC);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films (release_date);
+
+-- Время лайка для /films/trending (для баз, созданных до его появления): старые лайки получают
+-- заведомо давнее время, а не время миграции, и не попадают в окно трендов; новым ставит время БД
+ALTER TABLE film_likes ADD COLUMN IF NOT EXISTS liked_at TIMESTAMP NOT NULL DEFAULT TIMESTAMP '1970-01-01 00:00:00';
+ALTER TABLE film_likes ALTER COLUMN liked_at SET DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_film_likes_liked_at ON film_likes (liked_at);
+
+-- Разовые миграции данных: schema.sql выполняется при каждом старте, поэтому применённые миграции
+-- отмечаются здесь и больше не запускаются
+CREATE TABLE IF NOT EXISTS schema_migration (
+    name       VARCHAR(100) PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Backfill счётчика лайков (один раз): после отметки миграции верхняя граница по film_id
+-- становится 0, и UPDATE проходит по первичному ключу, не сканируя films
+UPDATE films f
+SET like_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.film_id)
+WHERE f.film_id <= (SELECT CASE WHEN COUNT(*) = 0 THEN 2147483647 ELSE 0 END
+                    FROM schema_migration WHERE name = 'films_like_count_backfill')
+  AND like_count <> (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.film_id);
+
+MERGE INTO schema_migration (name) KEY (name) VALUES ('films_like_count_backfill');
+
+-- Входящие заявки в друзья (getPendingRequests) ищутся по friend_id
+CREATE INDEX IF NOT EXISTS idx_friendship_friend ON friendship (friend_id, user_id);
+
+-- Лайки пользователя (GET /users/{id}/likes и проверка лайков для списка фильмов) ищутся по user_id
+CREATE INDEX IF NOT EXISTS idx_film_likes_user ON film_likes (user_id, film_id);
+
+-- Версия film_likes для снимков индексов: приложение сдвигает её в каждой транзакции, меняющей лайки
+CREATE SEQUENCE IF NOT EXISTS film_likes_version;
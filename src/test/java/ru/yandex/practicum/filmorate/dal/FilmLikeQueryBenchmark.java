@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Лайк и снятие лайка на H2 в памяти: прежняя последовательность запросов (INSERT, чтение liked_at,
+ * UPDATE like_count, NEXT VALUE; DELETE, UPDATE, NEXT VALUE) против одного запроса
+ * {@link FilmRepository#LIKE_FILM_QUERY} / {@link FilmRepository#UNLIKE_FILM_QUERY}.
+ * Каждая операция - лайк и его снятие в двух транзакциях, поэтому данные между итерациями не копятся.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=FilmLikeQueryBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmLikeQueryBenchmark {
+    private static final String INSERT_LIKE_QUERY =
+            "INSERT INTO film_likes (film_id, user_id) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+    private static final String GET_LIKE_TIME_QUERY =
+            "SELECT liked_at FROM film_likes WHERE film_id = ? AND user_id = ?";
+    private static final String DELETE_LIKE_QUERY =
+            "SELECT liked_at FROM OLD TABLE (DELETE FROM film_likes WHERE film_id = ? AND user_id = ?)";
+    private static final String INCREMENT_LIKE_COUNT_QUERY =
+            "UPDATE films SET like_count = like_count + 1 WHERE film_id = ?";
+    private static final String DECREMENT_LIKE_COUNT_QUERY =
+            "UPDATE films SET like_count = like_count - 1 WHERE film_id = ? AND like_count > 0";
+
+    @Param({"10000"})
+    int films;
+
+    @Param({"10000"})
+    int users;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:like-benchmark;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbc = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbc.batchUpdate("INSERT INTO users (email, login) VALUES (?, ?)", IntStream
+                .range(0, users).mapToObj(i -> new Object[]{"user" + i + "@mail.ru", "user" + i}).toList());
+        jdbc.batchUpdate("INSERT INTO films (name, release_date, duration) VALUES (?, DATE '2000-01-01', 100)",
+                IntStream.range(0, films).mapToObj(i -> new Object[]{"film" + i}).toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbc.execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public int separateQueries() {
+        long filmId = 1 + random.nextInt(films);
+        long userId = 1 + random.nextInt(users);
+        Integer liked = transactionTemplate.execute(status -> {
+            if (jdbc.update(INSERT_LIKE_QUERY, filmId, userId, filmId, userId) == 0) {
+                return 0;
+            }
+            jdbc.queryForObject(GET_LIKE_TIME_QUERY, Timestamp.class, filmId, userId);
+            jdbc.update(INCREMENT_LIKE_COUNT_QUERY, filmId);
+            jdbc.queryForObject(FilmRepository.BUMP_LIKES_VERSION_QUERY, Long.class);
+            return 1;
+        });
+        Integer unliked = transactionTemplate.execute(status -> {
+            List<Timestamp> deleted = jdbc.queryForList(DELETE_LIKE_QUERY, Timestamp.class, filmId, userId);
+            if (deleted.isEmpty()) {
+                return 0;
+            }
+            jdbc.update(DECREMENT_LIKE_COUNT_QUERY, filmId);
+            jdbc.queryForObject(FilmRepository.BUMP_LIKES_VERSION_QUERY, Long.class);
+            return 1;
+        });
+        return liked + unliked;
+    }
+
+    @Benchmark
+    public int singleStatement() {
+        long filmId = 1 + random.nextInt(films);
+        long userId = 1 + random.nextInt(users);
+        Integer liked = transactionTemplate.execute(status -> jdbc.query(FilmRepository.LIKE_FILM_QUERY,
+                (rs, rowNum) -> rs.getInt(2), filmId, filmId, userId, filmId, userId).size());
+        Integer unliked = transactionTemplate.execute(status -> jdbc.query(FilmRepository.UNLIKE_FILM_QUERY,
+                (rs, rowNum) -> rs.getInt(2), filmId, filmId, userId).size());
+        return liked + unliked;
+    }
+}
@@ -6,13 +6,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.context.jdbc.Sql;
 import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.film.Genre;
 import ru.yandex.practicum.filmorate.model.film.MpaRating;
 
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -21,13 +26,23 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({FilmRepository.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class, FilmRowMapper.class})
+@Import({FilmRepository.class, FilmCache.class, LikeWriteBehindBuffer.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class, FilmRowMapper.class, ReferenceDataRegistry.class})
 @Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RecordApplicationEvents
 class FilmRepositoryTest {
 
     @Autowired
     private FilmRepository filmRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmRowMapper filmRowMapper;
+
+    @Autowired
+    private ApplicationEvents events;
+
     private Film testFilm;
 
     @BeforeEach
@@ -39,13 +54,11 @@ class FilmRepositoryTest {
         testFilm.setDuration(120);
         testFilm.setLikes(new HashSet<>());
 
-        MpaRating mpa = new MpaRating();
-        mpa.setId(1);
+        MpaRating mpa = new MpaRating(1, null, null);
         testFilm.setMpa(mpa);
 
         Set<Genre> genres = new HashSet<>();
-        Genre genre = new Genre();
-        genre.setId(1);
+        Genre genre = new Genre(1, null);
         genres.add(genre);
         testFilm.setGenres(genres);
     }
@@ -89,6 +102,77 @@ class FilmRepositoryTest {
                 });
     }
 
+    @Test
+    void shouldServeCachedCopiesAndInvalidateOnUpdate() {
+        Film addedFilm = filmRepository.addFilm(testFilm);
+
+        Film cached = filmRepository.getFilmById(addedFilm.getId()).orElseThrow();
+        cached.setName("Changed without saving");
+        cached.getGenres().clear();
+        assertThat(filmRepository.getFilmById(addedFilm.getId()))
+                .hasValueSatisfying(film -> {
+                    assertThat(film.getName()).isEqualTo("Test Film");
+                    assertThat(film.getGenres()).hasSize(1);
+                });
+
+        cached.setName("Saved Name");
+        cached.setGenres(new HashSet<>(List.of(new Genre(2, null), new Genre(3, null))));
+        filmRepository.updateFilm(cached);
+        assertThat(filmRepository.getFilmById(addedFilm.getId()))
+                .hasValueSatisfying(film -> {
+                    assertThat(film.getName()).isEqualTo("Saved Name");
+                    assertThat(film.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(2, 3);
+                });
+
+        filmRepository.deleteFilm(addedFilm.getId());
+        assertThat(filmRepository.getFilmById(addedFilm.getId())).isEmpty();
+    }
+
+    @Test
+    void shouldApplyOnlyGenreDifferenceOnUpdate() {
+        testFilm.setGenres(new HashSet<>(List.of(new Genre(1, null), new Genre(2, null))));
+        Film film = filmRepository.addFilm(testFilm);
+        Long keptRowId = genreRowId(film.getId(), 2);
+
+        film.setGenres(new HashSet<>(List.of(new Genre(2, null), new Genre(3, null))));
+        filmRepository.updateFilm(film, true);
+
+        assertThat(storedGenreIds(film.getId())).containsExactly(2, 3);
+        // Общий жанр не удалялся и не вставлялся заново
+        assertThat(genreRowId(film.getId(), 2)).isEqualTo(keptRowId);
+
+        film.setName("Renamed");
+        film.setGenres(new HashSet<>());
+        filmRepository.updateFilm(film, false);
+        assertThat(storedGenreIds(film.getId())).containsExactly(2, 3);
+    }
+
+    private List<Integer> storedGenreIds(long filmId) {
+        return jdbcTemplate.queryForList(
+                "SELECT genre_id FROM film_genre WHERE film_id = ? ORDER BY genre_id", Integer.class, filmId);
+    }
+
+    private Long genreRowId(long filmId, int genreId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT _ROWID_ FROM film_genre WHERE film_id = ? AND genre_id = ?", Long.class, filmId, genreId);
+    }
+
+    @Test
+    void shouldMapRowsByColumnPlanWithoutMpaColumns() {
+        long filmId = filmRepository.addFilm(testFilm).getId();
+        String query = "SELECT duration, release_date, name, film_id, description FROM films WHERE film_id = ?";
+
+        // Второй вызов идёт по закэшированному плану колонок
+        for (int i = 0; i < 2; i++) {
+            Film film = jdbcTemplate.queryForObject(query, filmRowMapper.forQuery(query), filmId);
+            assertThat(film.getId()).isEqualTo(filmId);
+            assertThat(film.getName()).isEqualTo("Test Film");
+            assertThat(film.getReleaseDate()).isEqualTo(LocalDate.of(2000, 1, 1));
+            assertThat(film.getDuration()).isEqualTo(120);
+            assertThat(film.getMpa()).isNull();
+        }
+    }
+
     @Test
     void shouldGetAllFilms() {
         filmRepository.addFilm(testFilm);
@@ -99,8 +183,7 @@ class FilmRepositoryTest {
         anotherFilm.setReleaseDate(LocalDate.of(2001, 1, 1));
         anotherFilm.setDuration(90);
         anotherFilm.setLikes(new HashSet<>());
-        MpaRating mpa = new MpaRating();
-        mpa.setId(2);
+        MpaRating mpa = new MpaRating(2, null, null);
         anotherFilm.setMpa(mpa);
         filmRepository.addFilm(anotherFilm);
 
@@ -109,6 +192,47 @@ class FilmRepositoryTest {
         assertThat(films).hasSize(2);
     }
 
+    @Test
+    void shouldStreamFilmsWithGenres() {
+        long first = filmRepository.addFilm(testFilm).getId();
+        testFilm.setGenres(new HashSet<>(List.of(new Genre(2, null), new Genre(3, null))));
+        long second = filmRepository.addFilm(testFilm).getId();
+        testFilm.setGenres(new HashSet<>());
+        long third = filmRepository.addFilm(testFilm).getId();
+
+        List<Film> streamed = new ArrayList<>();
+        filmRepository.streamFilms(streamed::add);
+
+        assertThat(streamed).extracting(Film::getId).containsExactly(first, second, third);
+        assertThat(streamed.get(0).getGenres()).extracting(Genre::getId).containsExactly(1);
+        assertThat(streamed.get(1).getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(2, 3);
+        assertThat(streamed.get(2).getGenres()).isEmpty();
+    }
+
+    @Test
+    void shouldGetFilmsByIdsAcrossInListBuckets() {
+        List<Long> added = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            added.add(filmRepository.addFilm(testFilm).getId());
+        }
+        // Больше самого крупного IN-списка: запрос разобьётся на части, в том числе с дополнением
+        List<Long> ids = new ArrayList<>();
+        for (long missing = 100_000; ids.size() < 1100; missing++) {
+            ids.add(missing);
+        }
+        ids.addAll(1050, added);
+        Collections.reverse(added);
+        ids.addAll(0, added.subList(0, 3));
+
+        List<Film> films = filmRepository.getFilmsByIds(ids);
+
+        List<Long> expected = new ArrayList<>(added.subList(0, 3));
+        Collections.reverse(added);
+        expected.addAll(added);
+        assertThat(films).extracting(Film::getId).containsExactlyElementsOf(expected);
+        assertThat(films).allSatisfy(film -> assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(1));
+    }
+
     @Test
     void shouldAddAndRemoveLike() {
         Film addedFilm = filmRepository.addFilm(testFilm);
@@ -136,8 +260,7 @@ class FilmRepositoryTest {
         film2.setReleaseDate(LocalDate.of(2001, 1, 1));
         film2.setDuration(90);
         film2.setLikes(new HashSet<>());
-        MpaRating mpa = new MpaRating();
-        mpa.setId(2);
+        MpaRating mpa = new MpaRating(2, null, null);
         film2.setMpa(mpa);
         film2 = filmRepository.addFilm(film2);
 
@@ -151,6 +274,35 @@ class FilmRepositoryTest {
         assertThat(popularFilms.get(0).getId()).isEqualTo(film2.getId());
     }
 
+    @Test
+    void shouldMaintainLikeCount() {
+        Film film = filmRepository.addFilm(testFilm);
+
+        filmRepository.addLike(film.getId(), 1L);
+        filmRepository.addLike(film.getId(), 2L);
+        assertThat(likeCount(film.getId())).isEqualTo(2);
+
+        filmRepository.removeLike(film.getId(), 1L);
+        assertThat(likeCount(film.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStampLikeEventWithStoredLikedAt() {
+        Film film = filmRepository.addFilm(testFilm);
+
+        filmRepository.addLike(film.getId(), 1L);
+
+        Timestamp likedAt = jdbcTemplate.queryForObject(
+                "SELECT liked_at FROM film_likes WHERE film_id = ? AND user_id = 1", Timestamp.class, film.getId());
+        assertThat(events.stream(FilmLikeEvent.class))
+                .singleElement()
+                .satisfies(event -> assertThat(event.getLikedAt()).isEqualTo(likedAt.toInstant()));
+    }
+
+    private int likeCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE film_id = ?", Integer.class, filmId);
+    }
+
     @Test
     void shouldThrowWhenFilmNotFound() {
         assertThrows(NotFoundException.class, () -> {
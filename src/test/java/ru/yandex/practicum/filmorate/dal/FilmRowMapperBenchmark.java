@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.MpaRating;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение всего каталога через {@link FilmRowMapper}: план колонок из кэша по тексту запроса,
+ * план по метаданным на каждой строке и прежний маппер, который искал колонки по имени.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=FilmRowMapperBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class FilmRowMapperBenchmark {
+    private static final String QUERY =
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_rating_id, " +
+                    "m.mpa_id, m.mpa_name, m.description AS mpa_description " +
+                    "FROM films f LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id";
+
+    @Param({"1000000"})
+    int films;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private FilmRowMapper mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:row-mapper-benchmark;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=0", "sa", "", true);
+        jdbc = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        jdbc.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                "SELECT 'film' || X, 'description' || X, DATE '2000-01-01', 100, 1 + MOD(X, 5) " +
+                "FROM SYSTEM_RANGE(1, ?)", films);
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry(new GenreRepositoryImpl(jdbc),
+                new MpaRepositoryImpl(jdbc), new FilmCache(false, 0, 0));
+        referenceData.refresh();
+        mapper = new FilmRowMapper(referenceData);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbc.execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void cachedPlan(Blackhole blackhole) {
+        read(mapper.forQuery(QUERY), blackhole);
+    }
+
+    @Benchmark
+    public void planPerRow(Blackhole blackhole) {
+        read(mapper, blackhole);
+    }
+
+    @Benchmark
+    public void byColumnName(Blackhole blackhole) {
+        read(FilmRowMapperBenchmark::mapByName, blackhole);
+    }
+
+    private void read(RowMapper<Film> rowMapper, Blackhole blackhole) {
+        jdbc.query(QUERY, rs -> {
+            blackhole.consume(rowMapper.mapRow(rs, 0));
+        });
+    }
+
+    // Маппер до перехода на индексы колонок
+    private static Film mapByName(ResultSet rs, int rowNum) throws SQLException {
+        Film film = new Film();
+        film.setId(rs.getLong("film_id"));
+        film.setName(rs.getString("name"));
+        film.setDescription(rs.getString("description"));
+        film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+        film.setDuration(rs.getInt("duration"));
+        if (hasColumn(rs, "mpa_name")) {
+            String mpaName = rs.getString("mpa_name");
+            if (mpaName != null) {
+                film.setMpa(new MpaRating(rs.getInt("mpa_id"), mpaName, rs.getString("mpa_description")));
+            }
+        }
+        return film;
+    }
+
+    private static boolean hasColumn(ResultSet rs, String columnName) {
+        try {
+            rs.findColumn(columnName);
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
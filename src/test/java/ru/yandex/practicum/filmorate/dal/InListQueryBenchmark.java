@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка жанров для случайного набора до 10k фильмов на H2 в памяти: один запрос с IN-списком ровно
+ * под размер набора (каждый размер - новый текст запроса, разбор и план заново) против
+ * {@link BaseRepository#queryInBatches} с четырьмя фиксированными размерами.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=InListQueryBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InListQueryBenchmark {
+    private static final String GENRES_QUERY =
+            "SELECT fg.film_id, g.genre_id, g.name FROM film_genre fg " +
+                    "JOIN genre g ON fg.genre_id = g.genre_id " +
+                    "WHERE fg.film_id IN (%s) ORDER BY g.genre_id";
+
+    @Param({"100000"})
+    int films;
+
+    @Param({"10000"})
+    int maxIds;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private BaseRepository<Void> repository;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:in-list-benchmark;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbc = new JdbcTemplate(dataSource);
+        repository = new BaseRepository<>(jdbc, null);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        jdbc.update("INSERT INTO films (name, release_date, duration, mpa_rating_id) " +
+                "SELECT 'film' || X, DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, ?)", films);
+        jdbc.update("INSERT INTO film_genre (film_id, genre_id) SELECT X, 1 + MOD(X, 6) FROM SYSTEM_RANGE(1, ?)", films);
+        jdbc.update("INSERT INTO film_genre (film_id, genre_id) SELECT X, 1 + MOD(X + 3, 6) FROM SYSTEM_RANGE(1, ?)",
+                films);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbc.execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public int exactSizeList() {
+        List<Long> ids = randomIds();
+        String query = String.format(GENRES_QUERY, String.join(",", Collections.nCopies(ids.size(), "?")));
+        int[] rows = new int[1];
+        jdbc.query(query, rs -> {
+            rows[0]++;
+        }, ids.toArray());
+        return rows[0];
+    }
+
+    @Benchmark
+    public int fixedSizeBatches() {
+        int[] rows = new int[1];
+        repository.queryInBatches(GENRES_QUERY, randomIds(), rs -> {
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    // Разный размер набора на каждый вызов, как у страниц и выборок разной длины
+    private List<Long> randomIds() {
+        int size = 1 + random.nextInt(maxIds);
+        long first = 1 + random.nextInt(films - size + 1);
+        List<Long> ids = new ArrayList<>(size);
+        for (long id = first; id < first + size; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
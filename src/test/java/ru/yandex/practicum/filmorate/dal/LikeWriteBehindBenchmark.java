@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Пропускная способность лайков из 32 потоков на H2 в памяти с пулом соединений: прямая запись
+ * ({@link FilmRepository#LIKE_FILM_QUERY} в своей транзакции) против {@link LikeWriteBehindBuffer}
+ * в режиме ACK_AFTER_FLUSH, то есть до записи в БД. ACK_ON_ENQUEUE не замеряется: он мерил бы только
+ * рост очереди, которую сброс не успевает разбирать. Проверка фильма и пользователя в замер не входит -
+ * она одинакова для обоих путей.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=LikeWriteBehindBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class LikeWriteBehindBenchmark {
+    @Param({"10000"})
+    int films;
+
+    @Param({"100000"})
+    int users;
+
+    @Param({"5", "50"})
+    long flushIntervalMs;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private LikeWriteBehindBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:write-behind-benchmark;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(32);
+        jdbc = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbc.batchUpdate("INSERT INTO users (email, login) VALUES (?, ?)", IntStream.range(0, users)
+                .mapToObj(i -> new Object[]{"user" + i + "@mail.ru", "user" + i}).toList());
+        jdbc.batchUpdate("INSERT INTO films (name, release_date, duration) VALUES (?, DATE '2000-01-01', 100)",
+                IntStream.range(0, films).mapToObj(i -> new Object[]{"film" + i}).toList());
+        buffer = new LikeWriteBehindBuffer(jdbc, transactionTemplate, event -> {
+        }, true, LikeWriteBehindBuffer.Durability.ACK_AFTER_FLUSH, 500, flushIntervalMs, 5_000);
+        buffer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        buffer.stop();
+        jdbc.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Likes {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public int direct(Likes likes) {
+        long filmId = 1 + likes.random.nextInt(films);
+        long userId = 1 + likes.random.nextInt(users);
+        return transactionTemplate.execute(status -> jdbc.query(FilmRepository.LIKE_FILM_QUERY,
+                (rs, rowNum) -> rs.getInt(2), filmId, filmId, userId, filmId, userId).size());
+    }
+
+    @Benchmark
+    public void writeBehind(Likes likes) {
+        buffer.enqueue(1 + likes.random.nextInt(films), 1 + likes.random.nextInt(users), true);
+    }
+}
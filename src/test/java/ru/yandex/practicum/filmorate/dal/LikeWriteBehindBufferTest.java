@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.index.TrendingWindow;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.MpaRating;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmRepository.class, FilmCache.class, LikeWriteBehindBuffer.class, FilmRowMapper.class, ReferenceDataRegistry.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class,
+        TrendingFilmsIndex.class})
+@TestPropertySource(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.durability=ACK_ON_ENQUEUE",
+        "filmorate.likes.write-behind.flush-interval-ms=600000"
+})
+@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class LikeWriteBehindBufferTest {
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private LikeWriteBehindBuffer likeBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TrendingFilmsIndex trendingIndex;
+
+    @Test
+    void shouldCollapseMutationsAndFlushThemInOneBatch() {
+        long filmId = filmRepository.addFilm(film()).getId();
+
+        filmRepository.addLike(filmId, 1L);
+        filmRepository.addLike(filmId, 2L);
+        filmRepository.addLike(filmId, 1L);
+        filmRepository.removeLike(filmId, 2L);
+
+        assertThat(likeBuffer.getQueueDepth()).isEqualTo(2);
+        assertThat(likes(filmId)).isZero();
+
+        likeBuffer.flush();
+
+        assertThat(likeBuffer.getQueueDepth()).isZero();
+        assertThat(likes(filmId)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT like_count FROM films WHERE film_id = ?", Integer.class, filmId)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectAckAfterFlushInsideTransaction() {
+        long filmId = filmRepository.addFilm(film()).getId();
+        LikeWriteBehindBuffer buffer = buffer(LikeWriteBehindBuffer.Durability.ACK_AFTER_FLUSH, 5_000);
+        buffer.start();
+
+        // Тест идёт в транзакции: ожидание сброса здесь заняло бы её соединение
+        assertThrows(IllegalStateException.class, () -> buffer.enqueue(filmId, 1L, true));
+        assertThat(buffer.getQueueDepth()).isZero();
+
+        buffer.stop();
+    }
+
+    @Test
+    void shouldFlushQueuedLikesOnStopAndRejectLikesAfterIt() {
+        long filmId = filmRepository.addFilm(film()).getId();
+        LikeWriteBehindBuffer buffer = buffer(LikeWriteBehindBuffer.Durability.ACK_ON_ENQUEUE, 5_000);
+        buffer.start();
+
+        buffer.enqueue(filmId, 1L, true);
+        assertThat(buffer.getQueueDepth()).isEqualTo(1);
+
+        buffer.stop();
+        assertThat(buffer.getQueueDepth()).isZero();
+        assertThat(likes(filmId)).isEqualTo(1);
+        assertThrows(InternalServerException.class, () -> buffer.enqueue(filmId, 2L, true));
+    }
+
+    @Test
+    void shouldFailWhenFlushIsNotAcknowledgedInTime() {
+        long filmId = filmRepository.addFilm(film()).getId();
+        LikeWriteBehindBuffer buffer = buffer(LikeWriteBehindBuffer.Durability.ACK_AFTER_FLUSH, 50);
+        buffer.start();
+
+        // Вне транзакции теста; сброс по таймеру не наступит, и подтверждения не будет
+        CompletableFuture<Void> like = CompletableFuture.runAsync(() -> buffer.enqueue(filmId, 1L, true));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> like.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(InternalServerException.class);
+        assertThat(buffer.getQueueDepth()).isEqualTo(1);
+
+        buffer.stop();
+    }
+
+    @Test
+    void shouldReportLikeTimeOfUnlikesSoTrendingCountsGoBackDown() {
+        long filmId = filmRepository.addFilm(film()).getId();
+        List<FilmLikeEvent> events = new ArrayList<>();
+        LikeWriteBehindBuffer buffer = new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate,
+                event -> events.add((FilmLikeEvent) event),
+                true, LikeWriteBehindBuffer.Durability.ACK_ON_ENQUEUE, 500, 600_000, 5_000);
+
+        // Лайк и его снятие в разных сбросах: снятие пишется отдельным DELETE
+        for (int i = 0; i < 3; i++) {
+            buffer.enqueue(filmId, 1L, true);
+            buffer.flush();
+            buffer.enqueue(filmId, 1L, false);
+            buffer.flush();
+        }
+
+        assertThat(events).hasSize(6);
+        for (int i = 0; i < events.size(); i += 2) {
+            assertThat(events.get(i + 1).isAdded()).isFalse();
+            assertThat(events.get(i + 1).getLikedAt()).isEqualTo(events.get(i).getLikedAt());
+        }
+        trendingIndex.rebuild();
+        events.forEach(trendingIndex::onFilmLike);
+        assertThat(trendingIndex.getTopFilmIds(TrendingWindow.HOUR, 10)).isEmpty();
+        assertThat(likes(filmId)).isZero();
+    }
+
+    private LikeWriteBehindBuffer buffer(LikeWriteBehindBuffer.Durability durability, long ackTimeoutMs) {
+        return new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate, event -> {
+        }, true, durability, 500, 600_000, ackTimeoutMs);
+    }
+
+    private int likes(long filmId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private static Film film() {
+        Film film = new Film();
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating(1, null, null);
+        film.setMpa(mpa);
+        return film;
+    }
+}
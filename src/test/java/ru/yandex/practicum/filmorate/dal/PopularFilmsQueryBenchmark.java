@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка запроса популярных фильмов на H2 в памяти: EXISTS и коррелированный COUNT(*) по film_likes
+ * на каждую строку против упорядоченного чтения индекса по films.like_count.
+ * По умолчанию 100k фильмов и 10M лайков (заполнение занимает минуты, нужно около 3 ГБ кучи).
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PopularFilmsQueryBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class PopularFilmsQueryBenchmark {
+    private static final String CORRELATED_COUNT_QUERY =
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_rating_id, " +
+                    "m.mpa_id, m.mpa_name, m.description AS mpa_description " +
+                    "FROM films f " +
+                    "LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id " +
+                    "WHERE EXISTS (SELECT 1 FROM film_likes WHERE film_id = f.film_id) " +
+                    "ORDER BY (SELECT COUNT(*) FROM film_likes WHERE film_id = f.film_id) DESC " +
+                    "LIMIT ?";
+    private static final String LIKE_COUNT_QUERY =
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_rating_id, " +
+                    "m.mpa_id, m.mpa_name, m.description AS mpa_description " +
+                    "FROM films f " +
+                    "LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.mpa_id " +
+                    "WHERE f.like_count > 0 " +
+                    "ORDER BY f.like_count DESC, f.film_id " +
+                    "LIMIT ?";
+    private static final int USERS = 100_000;
+
+    @Param({"100000"})
+    int films;
+
+    @Param({"10000000"})
+    long likes;
+
+    @Param({"10"})
+    int count;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Без OPTIMIZE_REUSE_RESULTS=0 H2 отдаёт повторный одинаковый запрос из кэша результата
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:popular-benchmark;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=0", "sa", "", true);
+        jdbc = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        jdbc.update("INSERT INTO users (email, login) SELECT 'user' || X || '@mail.ru', 'user' || X " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbc.update("INSERT INTO films (name, release_date, duration, mpa_rating_id) " +
+                "SELECT 'film' || X, DATE '2000-01-01', 100, 1 + MOD(X, 5) FROM SYSTEM_RANGE(1, ?)", films);
+        // Лайк x: пользователь x % USERS, фильм сдвинут на x / USERS - пары не повторяются, пока likes / USERS < films.
+        // Квадрат в сдвиге даёт фильмам разное число лайков
+        jdbc.update("INSERT INTO film_likes (film_id, user_id) " +
+                "SELECT 1 + MOD(MOD(X, ?) * MOD(X, ?) + X / ?, ?), 1 + MOD(X, ?) FROM SYSTEM_RANGE(0, ? - 1)",
+                USERS, USERS, USERS, films, USERS, likes);
+        jdbc.update("UPDATE films f SET like_count = (SELECT COUNT(*) FROM film_likes WHERE film_id = f.film_id)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbc.execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Long> correlatedCount() {
+        return jdbc.query(CORRELATED_COUNT_QUERY, (rs, rowNum) -> rs.getLong("film_id"), count);
+    }
+
+    @Benchmark
+    public List<Long> likeCountIndex() {
+        return jdbc.query(LIKE_COUNT_QUERY, (rs, rowNum) -> rs.getLong("film_id"), count);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.controller.ReferenceDataEndpoint;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({ReferenceDataRegistry.class, ReferenceDataEndpoint.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class,
+        FilmCache.class})
+@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class ReferenceDataRegistryTest {
+
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+
+    @Autowired
+    private ReferenceDataEndpoint endpoint;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldPickUpNewGenreAfterEndpointRefresh() {
+        referenceData.refresh();
+        int genres = referenceData.getGenres().size();
+        jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (100, 'Нуар')");
+
+        assertThat(referenceData.findGenre(100)).isEmpty();
+        assertThat(referenceData.findMissingGenreIds(Set.of(100))).containsExactly(100);
+
+        assertThat(endpoint.refresh()).containsEntry("genres", genres + 1);
+        assertThat(referenceData.findGenre(100)).contains(new Genre(100, "Нуар"));
+        assertThat(referenceData.findMissingGenreIds(Set.of(100))).isEmpty();
+    }
+
+    @Test
+    void shouldHandOutReadOnlyLists() {
+        assertThrows(UnsupportedOperationException.class, () -> referenceData.getGenres().add(new Genre(100, "Нуар")));
+        assertThrows(UnsupportedOperationException.class, () -> referenceData.getMpaRatings().clear());
+    }
+}
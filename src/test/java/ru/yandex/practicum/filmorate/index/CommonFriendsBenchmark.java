@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общие друзья на H2 в памяти: тройной JOIN по friendship (GET_COMMON_FRIENDS_QUERY) против
+ * {@link CommonFriendsEngine} над {@link FriendGraph}. Граф - 5k пользователей и 200k рёбер,
+ * из них половина у 50 "хабов" с тысячами друзей. Пакетный случай - хаб против batch случайных пользователей.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=CommonFriendsBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommonFriendsBenchmark {
+    private static final int HUBS = 50;
+
+    @Param({"5000"})
+    int users;
+
+    @Param({"200000"})
+    int edges;
+
+    @Param({"1000"})
+    int batch;
+
+    private SingleConnectionDataSource dataSource;
+    private FriendshipRepository repository;
+    private FriendGraph graph;
+    private CommonFriendsEngine engine;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Без OPTIMIZE_REUSE_RESULTS=0 H2 отдаёт повторный одинаковый запрос из кэша результата
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:common-friends-benchmark;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=0", "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        jdbc.update("INSERT INTO users (email, login) SELECT 'user' || X || '@mail.ru', 'user' || X " +
+                "FROM SYSTEM_RANGE(1, ?)", users);
+        List<Object[]> rows = new ArrayList<>(edges);
+        for (long edge : generateEdges()) {
+            rows.add(new Object[]{edge >>> 32, edge & 0xFFFFFFFFL});
+        }
+        jdbc.batchUpdate("INSERT INTO friendship (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED')", rows);
+
+        repository = new FriendshipRepository(jdbc, new UserRowMapper(), event -> {
+        });
+        graph = new FriendGraph(repository, 10_000);
+        graph.rebuild();
+        engine = new CommonFriendsEngine(graph, 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graph.stop();
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public int pairSql() {
+        return repository.getCommonFriends(randomUser(), randomUser()).size();
+    }
+
+    @Benchmark
+    public int pairEngine() {
+        return engine.getCommonFriendIds(randomUser(), randomUser()).size();
+    }
+
+    @Benchmark
+    public void batchSql(Blackhole blackhole) {
+        long hub = 1 + random.nextInt(HUBS);
+        for (Long otherId : randomUsers()) {
+            blackhole.consume(repository.getCommonFriends(hub, otherId).size());
+        }
+    }
+
+    @Benchmark
+    public Map<Long, Integer> batchEngine() {
+        return engine.countCommonFriends(1 + random.nextInt(HUBS), randomUsers());
+    }
+
+    private long randomUser() {
+        return 1 + random.nextInt(users);
+    }
+
+    private List<Long> randomUsers() {
+        List<Long> ids = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            ids.add(randomUser());
+        }
+        return ids;
+    }
+
+    // Ребро упаковано в long: user_id в старших 32 битах, friend_id в младших.
+    // Первая половина рёбер выходит из хабов (пользователи 1..HUBS), вторая - из случайных пользователей
+    private Set<Long> generateEdges() {
+        Set<Long> result = new LinkedHashSet<>();
+        SplittableRandom generator = new SplittableRandom(7);
+        while (result.size() < edges) {
+            long userId = result.size() < edges / 2 ? 1 + generator.nextInt(HUBS) : 1 + generator.nextInt(users);
+            long friendId = 1 + generator.nextInt(users);
+            if (userId != friendId) {
+                result.add(userId << 32 | friendId);
+            }
+        }
+        return result;
+    }
+}
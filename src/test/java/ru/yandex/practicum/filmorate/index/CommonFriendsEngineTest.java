@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({CommonFriendsEngine.class, FriendGraph.class, FriendshipRepository.class, UserRowMapper.class})
+@TestPropertySource(properties = "filmorate.friends.common.bitmap-threshold=3")
+@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class CommonFriendsEngineTest {
+
+    @Autowired
+    private CommonFriendsEngine commonFriendsEngine;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldIntersectByMergeAndByGallop() {
+        Random random = new Random(17);
+        for (int round = 0; round < 200; round++) {
+            // Разная длина списков попадает то в слияние, то в галоп
+            int[] small = randomSorted(random, 1 + random.nextInt(20), 2_000);
+            int[] large = randomSorted(random, 1 + random.nextInt(round < 100 ? 40 : 1_500), 2_000);
+
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int value : small) {
+                expected.add(value);
+            }
+            TreeSet<Integer> largeSet = new TreeSet<>();
+            for (int value : large) {
+                largeSet.add(value);
+            }
+            expected.retainAll(largeSet);
+            int[] common = expected.stream().mapToInt(Integer::intValue).toArray();
+
+            assertThat(SortedIntSets.intersect(small, large)).containsExactly(common);
+            assertThat(SortedIntSets.intersect(large, small)).containsExactly(common);
+            assertThat(SortedIntSets.intersectionSize(small, large)).isEqualTo(expected.size());
+        }
+    }
+
+    @Test
+    void shouldCountBatchThroughBitmapLikePairwise() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 8; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "common" + i + "@example.com", "common" + i, "Common " + i, LocalDate.of(1990, 1, 1));
+        }
+        List<Long> ids = jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class);
+        Random random = new Random(42);
+        for (long userId : ids) {
+            for (long friendId : ids) {
+                if (userId != friendId && random.nextInt(2) == 0) {
+                    friendshipRepository.addFriend(userId, friendId);
+                }
+            }
+        }
+        friendGraph.rebuild();
+
+        for (long userId : ids) {
+            List<Long> others = new ArrayList<>(ids);
+            Map<Long, Integer> counts = commonFriendsEngine.countCommonFriends(userId, others);
+
+            assertThat(counts.keySet()).containsExactlyElementsOf(others);
+            assertThat(counts).isEqualTo(others.stream().collect(Collectors.toMap(
+                    otherId -> otherId,
+                    otherId -> commonFriendsEngine.getCommonFriendIds(userId, otherId).size())));
+            for (long otherId : others) {
+                assertThat(commonFriendsEngine.getCommonFriendIds(userId, otherId))
+                        .containsExactlyElementsOf(jdbcTemplate.queryForList(
+                                "SELECT f1.friend_id FROM friendship f1 JOIN friendship f2 " +
+                                        "ON f1.friend_id = f2.friend_id WHERE f1.user_id = ? AND f2.user_id = ? " +
+                                        "ORDER BY f1.friend_id", Long.class, userId, otherId));
+            }
+        }
+    }
+
+    private static int[] randomSorted(Random random, int size, int bound) {
+        return random.ints(size, 0, bound).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactBitmapTest {
+
+    @Test
+    void shouldMatchTreeSetAcrossArrayAndBitmapBlocks() {
+        Random random = new Random(22);
+        // Плотный первый блок становится битовой картой и обратно, остальные остаются разреженными
+        TreeSet<Integer> expected = new TreeSet<>();
+        TreeSet<Integer> otherExpected = new TreeSet<>();
+        for (int i = 0; i < 6_000; i++) {
+            expected.add(random.nextInt(8_000));
+            otherExpected.add(random.nextInt(8_000));
+        }
+        for (int i = 0; i < 300; i++) {
+            expected.add(random.nextInt(1_000_000));
+            otherExpected.add(random.nextInt(1_000_000));
+        }
+        CompactBitmap bitmap = CompactBitmap.of(toArray(expected));
+        CompactBitmap other = CompactBitmap.of(toArray(otherExpected));
+
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextBoolean() ? random.nextInt(8_000) : random.nextInt(1_000_000);
+            if (random.nextInt(3) == 0) {
+                bitmap = bitmap.with(id);
+                expected.add(id);
+            } else {
+                bitmap = bitmap.without(id);
+                expected.remove(id);
+            }
+        }
+
+        assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+        assertThat(bitmap.toArray()).containsExactly(toArray(expected));
+        for (int id = 0; id < 10_000; id++) {
+            assertThat(bitmap.contains(id)).isEqualTo(expected.contains(id));
+        }
+        TreeSet<Integer> common = new TreeSet<>(expected);
+        common.retainAll(otherExpected);
+        assertThat(bitmap.intersectionSize(other)).isEqualTo(common.size());
+        assertThat(other.intersectionSize(bitmap)).isEqualTo(common.size());
+        assertThat(bitmap.intersectionSize(CompactBitmap.EMPTY)).isZero();
+    }
+
+    @Test
+    void shouldStaySmallForSparseSets() {
+        CompactBitmap sparse = CompactBitmap.of(new int[]{3, 70_000, 140_000});
+        CompactBitmap dense = CompactBitmap.of(IntStream.range(0, 60_000).toArray());
+
+        assertThat(sparse.memoryFootprintBytes()).isLessThan(200);
+        assertThat(dense.memoryFootprintBytes()).isLessThan(9_000);
+        assertThat(sparse.without(70_000).toArray()).containsExactly(3, 140_000);
+        assertThat(sparse.without(5)).isSameAs(sparse);
+    }
+
+    @Test
+    void shouldSampleAndSerializeAcrossBlocks() throws IOException {
+        Random random = new Random(25);
+        TreeSet<Integer> ids = new TreeSet<>();
+        for (int i = 0; i < 7_000; i++) {
+            ids.add(random.nextInt(10_000));
+        }
+        for (int i = 0; i < 500; i++) {
+            ids.add(random.nextInt(2_000_000));
+        }
+        int[] expected = toArray(ids);
+        CompactBitmap bitmap = CompactBitmap.of(expected);
+
+        for (int step : new int[]{1, 3, 64, 1_000}) {
+            List<Integer> sampled = new ArrayList<>();
+            int emitted = bitmap.forEachSampled(step, 50, sampled::add);
+            List<Integer> expectedSample = IntStream.iterate(0, i -> i < expected.length, i -> i + step)
+                    .limit(50)
+                    .mapToObj(i -> expected[i])
+                    .toList();
+            assertThat(sampled).as("step %d", step).isEqualTo(expectedSample);
+            assertThat(emitted).isEqualTo(expectedSample.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+        CompactBitmap.EMPTY.writeTo(new DataOutputStream(bytes));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CompactBitmap restored = CompactBitmap.readFrom(in);
+        assertThat(restored.toArray()).containsExactly(expected);
+        assertThat(restored.intersectionSize(bitmap)).isEqualTo(expected.length);
+        assertThat(CompactBitmap.readFrom(in)).isSameAs(CompactBitmap.EMPTY);
+    }
+
+    private static int[] toArray(TreeSet<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Снимок лайкнувших на файловой БД: приложение останавливается и поднимается заново на тех же файлах.
+ * Лайки идут через write-behind и к остановке ещё лежат в очереди.
+ */
+class FilmLikerSnapshotRestartTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldReuseSnapshotAfterRestart() {
+        long filmId;
+        FilmRepository.LikesVersion versionAtShutdown;
+        try (ConfigurableApplicationContext context = start()) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            FilmRepository filmRepository = context.getBean(FilmRepository.class);
+            for (int i = 0; i < 3; i++) {
+                jdbc.update("INSERT INTO users (email, login) VALUES (?, ?)", "restart" + i + "@example.com",
+                        "restart" + i);
+            }
+            jdbc.update("INSERT INTO films (name, release_date, duration, mpa_rating_id) " +
+                    "VALUES ('Film', '2000-01-01', 100, 1)");
+            filmId = jdbc.queryForObject("SELECT MAX(film_id) FROM films", Long.class);
+            List<Long> userIds = jdbc.queryForList("SELECT user_id FROM users", Long.class);
+            userIds.forEach(userId -> filmRepository.addLike(filmId, userId));
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM film_likes", Integer.class)).isZero();
+
+            // Остановка: сначала последний сброс очереди, потом снимок
+            context.stop();
+            versionAtShutdown = filmRepository.getLikesVersion();
+            assertThat(versionAtShutdown.count()).isEqualTo(3);
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            FilmRepository filmRepository = context.getBean(FilmRepository.class);
+            FilmLikerStore likerStore = context.getBean(FilmLikerStore.class);
+
+            // Номер версии после закрытия и открытия файла БД тот же, и снимок с ним совпадает
+            assertThat(filmRepository.getLikesVersion()).isEqualTo(versionAtShutdown);
+            assertThat(likerStore.loadSnapshot()).isTrue();
+            assertThat(likerStore.likeCount(filmId)).isEqualTo(3);
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:" + tempDir.resolve("filmorate").toAbsolutePath(),
+                        "--filmorate.likes.snapshot.path=" + tempDir.resolve("likers.snapshot").toAbsolutePath(),
+                        "--filmorate.likes.write-behind.enabled=true",
+                        "--filmorate.likes.write-behind.durability=ACK_ON_ENQUEUE",
+                        "--filmorate.likes.write-behind.flush-interval-ms=600000");
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmLikerStore.class, FilmRepository.class, FilmCache.class, LikeWriteBehindBuffer.class,
+        FilmRowMapper.class, ReferenceDataRegistry.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class})
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmLikerStoreTest {
+
+    @Autowired
+    private FilmLikerStore likerStore;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path tempDir;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 20; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "liker" + i + "@example.com", "liker" + i, "Liker " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+        filmIds.clear();
+        for (int i = 0; i < 6; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                    "VALUES ('Film', 'Description', '2000-01-01', 100, 1)");
+            filmIds.add(jdbcTemplate.queryForObject("SELECT MAX(film_id) FROM films", Long.class));
+        }
+        likerStore.rebuild();
+    }
+
+    @Test
+    void shouldMatchFilmLikesAfterIncrementalUpdates() {
+        likeRandomly(new Random(25), 200);
+
+        assertMatchesFilmLikes(likerStore);
+        likerStore.rebuild();
+        assertMatchesFilmLikes(likerStore);
+    }
+
+    @Test
+    void shouldRestoreFromSnapshotOnlyWhileFilmLikesAreUnchanged() throws IOException {
+        likeRandomly(new Random(26), 60);
+        Path snapshot = tempDir.resolve("likers.snapshot");
+        FilmLikerStore saved = new FilmLikerStore(filmRepository, snapshot.toString());
+        saved.load();
+        saved.saveSnapshot();
+
+        FilmLikerStore restored = new FilmLikerStore(filmRepository, snapshot.toString());
+        assertThat(restored.loadSnapshot()).isTrue();
+        assertMatchesFilmLikes(restored);
+
+        filmRepository.addLike(filmIds.get(0), userIds.get(0));
+        filmRepository.addLike(filmIds.get(1), userIds.get(0));
+        assertThat(new FilmLikerStore(filmRepository, snapshot.toString()).loadSnapshot()).isFalse();
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+        FilmLikerStore corrupted = new FilmLikerStore(filmRepository, snapshot.toString());
+        corrupted.load();
+        assertMatchesFilmLikes(corrupted);
+    }
+
+    @Test
+    void shouldRejectSnapshotWhenLikesChangeWithoutChangingCountOrLastLikeTime() {
+        likeRandomly(new Random(27), 60);
+        Path snapshot = tempDir.resolve("likers.snapshot");
+        FilmLikerStore saved = new FilmLikerStore(filmRepository, snapshot.toString());
+        saved.load();
+        saved.saveSnapshot();
+
+        // Один лайк снят, другой поставлен с временем не позже прежнего последнего (часы БД ушли назад):
+        // число лайков и MAX(liked_at) те же, а содержимое - нет
+        long filmId = jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM film_likes", Long.class);
+        long userId = jdbcTemplate.queryForObject(
+                "SELECT MIN(user_id) FROM film_likes WHERE film_id = ?", Long.class, filmId);
+        long otherUserId = jdbcTemplate.queryForObject(
+                "SELECT MIN(user_id) FROM users WHERE user_id NOT IN " +
+                        "(SELECT user_id FROM film_likes WHERE film_id = ?)", Long.class, filmId);
+        filmRepository.removeLike(filmId, userId);
+        filmRepository.addLike(filmId, otherUserId);
+        jdbcTemplate.update("UPDATE film_likes SET liked_at = TIMESTAMP '1971-01-01 00:00:00' " +
+                "WHERE film_id = ? AND user_id = ?", filmId, otherUserId);
+
+        assertThat(new FilmLikerStore(filmRepository, snapshot.toString()).loadSnapshot()).isFalse();
+    }
+
+    private void likeRandomly(Random random, int operations) {
+        for (int i = 0; i < operations; i++) {
+            long filmId = filmIds.get(random.nextInt(filmIds.size()));
+            long userId = userIds.get(random.nextInt(userIds.size()));
+            if (random.nextInt(4) == 0) {
+                filmRepository.removeLike(filmId, userId);
+            } else {
+                filmRepository.addLike(filmId, userId);
+            }
+        }
+    }
+
+    private void assertMatchesFilmLikes(FilmLikerStore store) {
+        Map<Long, Set<Long>> likers = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, user_id FROM film_likes", rs -> {
+            likers.computeIfAbsent(rs.getLong(1), id -> new HashSet<>()).add(rs.getLong(2));
+        });
+        for (long filmId : filmIds) {
+            Set<Long> filmLikers = likers.getOrDefault(filmId, Set.of());
+            assertThat(store.likeCount(filmId)).as("film %d", filmId).isEqualTo(filmLikers.size());
+            for (long userId : userIds) {
+                assertThat(store.hasLiked(filmId, userId)).isEqualTo(filmLikers.contains(userId));
+            }
+            for (long otherId : filmIds) {
+                long common = filmLikers.stream()
+                        .filter(likers.getOrDefault(otherId, Set.of())::contains)
+                        .count();
+                assertThat(store.commonLikers(filmId, otherId)).isEqualTo(common);
+            }
+        }
+        assertThat(store.likeTotal()).isEqualTo(likers.values().stream().mapToLong(Set::size).sum());
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.MpaRating;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmRepository.class, FilmCache.class, LikeWriteBehindBuffer.class, FilmRowMapper.class, ReferenceDataRegistry.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class, FilmPopularityIndex.class})
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmPopularityIndexTest {
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private FilmPopularityIndex popularityIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        popularityIndex.rebuild();
+    }
+
+    @Test
+    void shouldMatchSqlRanking() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            films.add(filmRepository.addFilm(film("Film " + i)));
+        }
+        filmRepository.addLike(films.get(3).getId(), 1L);
+        filmRepository.addLike(films.get(3).getId(), 2L);
+        filmRepository.addLike(films.get(1).getId(), 1L);
+        filmRepository.addLike(films.get(4).getId(), 2L);
+        filmRepository.removeLike(films.get(4).getId(), 2L);
+
+        List<Long> sqlIds = filmRepository.getPopularFilms(10).stream()
+                .map(Film::getId)
+                .toList();
+
+        assertThat(popularityIndex.getTopFilmIds(10)).isEqualTo(sqlIds);
+        assertThat(popularityIndex.getLikeCount(films.get(3).getId())).isEqualTo(2);
+
+        popularityIndex.rebuild();
+        assertThat(popularityIndex.getTopFilmIds(10)).isEqualTo(sqlIds);
+    }
+
+    @Test
+    void shouldMatchSqlRankingWithFilters() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Film film = film("Film " + i);
+            film.setReleaseDate(LocalDate.of(2000 + i % 2, 1, 1));
+            film.setMpa(new MpaRating(1 + i % 3, null, null));
+            film.setGenres(new HashSet<>(List.of(new Genre(1 + i % 2, null))));
+            films.add(filmRepository.addFilm(film));
+            for (long userId = 1; userId <= 1 + i % 2; userId++) {
+                filmRepository.addLike(film.getId(), userId);
+            }
+        }
+        Film updated = films.get(0);
+        updated.setGenres(new HashSet<>(List.of(new Genre(3, null))));
+        filmRepository.updateFilm(updated);
+
+        assertSameAsSql(2, null, null);
+        assertSameAsSql(3, null, null);
+        assertSameAsSql(null, 2, null);
+        assertSameAsSql(1, 2, null);
+        assertSameAsSql(null, null, 2001);
+        assertSameAsSql(2, 1, 2001);
+    }
+
+    @Test
+    void shouldDropDeletedFilms() {
+        Film deleted = filmRepository.addFilm(film("Deleted"));
+        Film kept = filmRepository.addFilm(film("Kept"));
+        filmRepository.addLike(deleted.getId(), 1L);
+        filmRepository.addLike(deleted.getId(), 2L);
+        filmRepository.addLike(kept.getId(), 1L);
+
+        filmRepository.deleteFilm(deleted.getId());
+
+        assertThat(popularityIndex.getTopFilmIds(10)).containsExactly(kept.getId());
+        assertThat(popularityIndex.getTopFilmIds(10, null, 1, 2000)).containsExactly(kept.getId());
+        assertThat(popularityIndex.getLikeCount(deleted.getId())).isZero();
+    }
+
+    @Test
+    void shouldIgnoreLikeThatArrivesAfterFilmDeletion() {
+        Film film = filmRepository.addFilm(film("Deleted"));
+        filmRepository.deleteFilm(film.getId());
+
+        // Событие лайка, закоммиченного до удаления, но обработанного после него
+        popularityIndex.onFilmLike(new FilmLikeEvent(film.getId(), 1L, true, Instant.now()));
+
+        assertThat(popularityIndex.getTopFilmIds(10)).isEmpty();
+        assertThat(popularityIndex.getLikeCount(film.getId())).isZero();
+    }
+
+    @Test
+    void shouldApplyLikesOnlyAfterCommit() {
+        Film film = filmRepository.addFilm(film("Transactional"));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            filmRepository.addLike(film.getId(), 1L);
+            assertThat(popularityIndex.getLikeCount(film.getId())).isZero();
+            status.setRollbackOnly();
+        });
+        assertThat(popularityIndex.getLikeCount(film.getId())).isZero();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            filmRepository.addLike(film.getId(), 1L);
+            assertThat(popularityIndex.getTopFilmIds(10)).isEmpty();
+        });
+        assertThat(popularityIndex.getTopFilmIds(10)).containsExactly(film.getId());
+    }
+
+    @Test
+    void shouldRefreshFacetsOfFilmWithoutLikes() {
+        Film film = filmRepository.addFilm(film("Unliked"));
+        filmRepository.addLike(film.getId(), 1L);
+        filmRepository.removeLike(film.getId(), 1L);
+
+        film.setReleaseDate(LocalDate.of(2001, 1, 1));
+        film.setMpa(new MpaRating(2, null, null));
+        film.setGenres(new HashSet<>(List.of(new Genre(3, null))));
+        filmRepository.updateFilm(film);
+        filmRepository.addLike(film.getId(), 1L);
+
+        assertThat(popularityIndex.getTopFilmIds(10, 3, 2, 2001)).containsExactly(film.getId());
+        assertThat(popularityIndex.getTopFilmIds(10, null, 1, null)).isEmpty();
+        assertThat(popularityIndex.getTopFilmIds(10, null, null, 2000)).isEmpty();
+        assertSameAsSql(3, null, null);
+    }
+
+    private void assertSameAsSql(Integer genreId, Integer mpaId, Integer year) {
+        List<Long> sqlIds = filmRepository.getPopularFilms(10, genreId, mpaId, year).stream()
+                .map(Film::getId)
+                .toList();
+        assertThat(popularityIndex.getTopFilmIds(10, genreId, mpaId, year)).isEqualTo(sqlIds);
+    }
+
+    @Test
+    void shouldStayConsistentUnderConcurrentUpdates() throws InterruptedException {
+        int threads = 8;
+        int films = 50;
+        int iterations = 10_000;
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < films; i++) {
+            filmIds.add(filmRepository.addFilm(film("Film " + i)).getId());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    long filmId = filmIds.get((seed + i) % films);
+                    popularityIndex.adjust(filmId, 1);
+                    if (i % 2 == 0) {
+                        popularityIndex.adjust(filmId, -1);
+                    }
+                    popularityIndex.getTopFilmIds(10);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<Long> top = popularityIndex.getTopFilmIds(films);
+        assertThat(top).hasSize(films).doesNotHaveDuplicates();
+        long total = top.stream().mapToLong(popularityIndex::getLikeCount).sum();
+        assertThat(total).isEqualTo((long) threads * iterations / 2);
+        for (int i = 1; i < top.size(); i++) {
+            assertThat(popularityIndex.getLikeCount(top.get(i - 1)))
+                    .isGreaterThanOrEqualTo(popularityIndex.getLikeCount(top.get(i)));
+        }
+    }
+
+    private Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating(1, null, null);
+        film.setMpa(mpa);
+        return film;
+    }
+}
@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.MpaRating;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmRecommendationEngine.class, FilmLikeIndex.class, FilmLikerStore.class, FilmRepository.class,
+        FilmCache.class, LikeWriteBehindBuffer.class, FilmRowMapper.class, ReferenceDataRegistry.class,
+        GenreRepositoryImpl.class, MpaRepositoryImpl.class})
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmRecommendationEngineTest {
+
+    @Autowired
+    private FilmRecommendationEngine recommendationEngine;
+
+    @Autowired
+    private FilmLikeIndex likeIndex;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 30; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "rec" + i + "@example.com", "rec" + i, "Rec " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+        filmIds.clear();
+        for (int i = 0; i < 15; i++) {
+            filmIds.add(filmRepository.addFilm(film("Film " + i)).getId());
+        }
+        likeIndex.rebuild();
+    }
+
+    @Test
+    void shouldRecommendFilmsOfMostSimilarUsers() {
+        long user = userIds.get(0);
+        like(user, 0, 1, 2);
+        like(userIds.get(1), 0, 1, 2, 3);
+        like(userIds.get(2), 0, 4);
+        like(userIds.get(3), 5);
+
+        assertThat(recommendationEngine.recommend(user, 10)).containsExactly(filmIds.get(3), filmIds.get(4));
+        assertThat(recommendationEngine.recommend(user, 1)).containsExactly(filmIds.get(3));
+
+        // Свой лайк сбрасывает кэш соседей, новый лайк соседа виден сразу
+        like(user, 3);
+        like(userIds.get(1), 6);
+        assertThat(recommendationEngine.recommend(user, 10)).containsExactly(filmIds.get(6), filmIds.get(4));
+        assertThat(recommendationEngine.recommend(userIds.get(4), 10)).isEmpty();
+    }
+
+    @Test
+    void shouldMatchBruteForceJaccardNeighbours() {
+        Random random = new Random(22);
+        for (int i = 0; i < 200; i++) {
+            long filmId = filmIds.get(random.nextInt(filmIds.size()));
+            long userId = userIds.get(random.nextInt(userIds.size()));
+            if (random.nextInt(4) == 0) {
+                filmRepository.removeLike(filmId, userId);
+            } else {
+                filmRepository.addLike(filmId, userId);
+            }
+        }
+        Map<Long, Set<Long>> likes = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM film_likes", rs -> {
+            likes.computeIfAbsent(rs.getLong(1), id -> new HashSet<>()).add(rs.getLong(2));
+        });
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (long userId : userIds) {
+                assertThat(recommendationEngine.recommend(userId, 100))
+                        .as("user %d", userId)
+                        .isEqualTo(bruteForce(userId, likes));
+            }
+            likeIndex.rebuild();
+        }
+    }
+
+    private List<Long> bruteForce(long userId, Map<Long, Set<Long>> likes) {
+        Set<Long> liked = likes.getOrDefault(userId, Set.of());
+        if (liked.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<Long, Double>> neighbours = new ArrayList<>();
+        likes.forEach((otherId, otherLiked) -> {
+            long common = otherLiked.stream().filter(liked::contains).count();
+            if (otherId != userId && common > 0) {
+                neighbours.add(Map.entry(otherId,
+                        (double) common / (liked.size() + otherLiked.size() - common)));
+            }
+        });
+        neighbours.sort(Comparator.comparing(Map.Entry<Long, Double>::getValue).reversed()
+                .thenComparing(Map.Entry::getKey));
+
+        Map<Long, Double> scores = new HashMap<>();
+        neighbours.stream().limit(50).forEach(neighbour -> likes.get(neighbour.getKey()).stream()
+                .filter(filmId -> !liked.contains(filmId))
+                .sorted()
+                .forEach(filmId -> scores.merge(filmId, neighbour.getValue(), Double::sum)));
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private void like(long userId, int... films) {
+        for (int film : films) {
+            filmRepository.addLike(filmIds.get(film), userId);
+        }
+    }
+
+    private Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating(1, null, null);
+        film.setMpa(mpa);
+        return film;
+    }
+}
@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.MpaRating;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmSimilarityIndex.class, FilmLikeIndex.class, FilmLikerStore.class, FilmRepository.class, FilmCache.class, LikeWriteBehindBuffer.class,
+        FilmRowMapper.class, ReferenceDataRegistry.class, GenreRepositoryImpl.class, MpaRepositoryImpl.class})
+@TestPropertySource(properties = "filmorate.films.similar.top-n=3")
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmSimilarityIndexTest {
+    private static final double CO_LIKE_WEIGHT = 0.8;
+
+    @Autowired
+    private FilmSimilarityIndex similarityIndex;
+
+    @Autowired
+    private FilmLikeIndex likeIndex;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Film> films = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 12; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "similar" + i + "@example.com", "similar" + i, "Similar " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+        films.clear();
+        for (int i = 0; i < 8; i++) {
+            films.add(filmRepository.addFilm(film("Film " + i, 1 + i % 3, 1 + i % 2)));
+        }
+        likeIndex.rebuild();
+        similarityIndex.rebuild();
+    }
+
+    @Test
+    void shouldKeepIncrementalTopListsEqualToBruteForce() {
+        Random random = new Random(21);
+        for (int i = 0; i < 150; i++) {
+            long filmId = films.get(random.nextInt(films.size())).getId();
+            long userId = userIds.get(random.nextInt(userIds.size()));
+            if (random.nextInt(3) == 0) {
+                filmRepository.removeLike(filmId, userId);
+            } else {
+                filmRepository.addLike(filmId, userId);
+            }
+            // Пачки разного размера: пары успевают обнулиться и внутри пачки, и между ними
+            if (random.nextInt(10) == 0) {
+                similarityIndex.applyPending();
+            }
+        }
+        Film changed = films.get(0);
+        changed.setGenres(new HashSet<>(List.of(new Genre(2, null), new Genre(3, null))));
+        filmRepository.updateFilm(changed);
+
+        similarityIndex.applyPending();
+        assertMatchesBruteForce();
+        similarityIndex.rebuild();
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    void shouldRankCoLikedFilmsAndHonourLimit() {
+        long first = films.get(0).getId();
+        long second = films.get(1).getId();
+        long third = films.get(2).getId();
+        for (int i = 0; i < 3; i++) {
+            filmRepository.addLike(first, userIds.get(i));
+            filmRepository.addLike(second, userIds.get(i));
+        }
+        filmRepository.addLike(first, userIds.get(5));
+        filmRepository.addLike(third, userIds.get(5));
+        similarityIndex.applyPending();
+
+        assertThat(similarityIndex.getSimilarFilmIds(first, 10)).containsExactly(second, third);
+        assertThat(similarityIndex.getSimilarFilmIds(first, 1)).containsExactly(second);
+        assertThat(similarityIndex.getSimilarFilmIds(films.get(7).getId(), 10)).isEmpty();
+
+        filmRepository.removeLike(third, userIds.get(5));
+        similarityIndex.applyPending();
+        assertThat(similarityIndex.getSimilarFilmIds(first, 10)).containsExactly(second);
+        assertThat(similarityIndex.getSimilarFilmIds(third, 10)).isEmpty();
+
+        // Обнулившаяся пара (first, third) удалена из матрицы с обеих сторон
+        assertThat(similarityIndex.coLikedPairs()).isEqualTo(2);
+    }
+
+    private void assertMatchesBruteForce() {
+        Map<Long, Set<Long>> likers = jdbcTemplate.query("SELECT film_id, user_id FROM film_likes", rs -> {
+            Map<Long, Set<Long>> result = new HashMap<>();
+            while (rs.next()) {
+                result.computeIfAbsent(rs.getLong(1), id -> new HashSet<>()).add(rs.getLong(2));
+            }
+            return result;
+        });
+        Map<Long, Set<Integer>> genres = films.stream().collect(Collectors.toMap(Film::getId,
+                film -> Set.copyOf(filmRepository.getFilmGenreIds(film.getId()))));
+
+        for (Film film : films) {
+            long filmId = film.getId();
+            Set<Long> filmLikers = likers.getOrDefault(filmId, Set.of());
+            List<Map.Entry<Long, Double>> expected = new ArrayList<>();
+            for (Film other : films) {
+                Set<Long> otherLikers = likers.getOrDefault(other.getId(), Set.of());
+                long together = filmLikers.stream().filter(otherLikers::contains).count();
+                if (other.getId().equals(filmId) || together == 0) {
+                    continue;
+                }
+                double coLiked = together / Math.sqrt((double) filmLikers.size() * otherLikers.size());
+                expected.add(Map.entry(other.getId(),
+                        CO_LIKE_WEIGHT * coLiked + (1 - CO_LIKE_WEIGHT) * jaccard(
+                                genres.get(filmId), genres.get(other.getId()))));
+            }
+            List<Long> expectedIds = expected.stream()
+                    .sorted(Comparator.comparing(Map.Entry<Long, Double>::getValue).reversed()
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(3)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            assertThat(similarityIndex.getSimilarFilmIds(filmId, 10)).as("film %d", filmId).isEqualTo(expectedIds);
+        }
+    }
+
+    private static double jaccard(Set<Integer> genres, Set<Integer> otherGenres) {
+        if (genres.isEmpty() && otherGenres.isEmpty()) {
+            return 0;
+        }
+        long common = genres.stream().filter(otherGenres::contains).count();
+        return (double) common / (genres.size() + otherGenres.size() - common);
+    }
+
+    private Film film(String name, int... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating(1, null, null);
+        film.setMpa(mpa);
+        Set<Genre> genres = new HashSet<>();
+        for (int genreId : genreIds) {
+            genres.add(new Genre(genreId, null));
+        }
+        film.setGenres(genres);
+        return film;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendFilmFeed.class, FriendGraph.class, FilmLikeIndex.class, FilmLikerStore.class,
+        FriendshipRepository.class, FilmRepository.class, FilmCache.class, LikeWriteBehindBuffer.class,
+        FilmRowMapper.class, UserRowMapper.class, ReferenceDataRegistry.class, GenreRepositoryImpl.class,
+        MpaRepositoryImpl.class})
+@TestPropertySource(properties = "filmorate.friends.popular-films.fan-out-cap=3")
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FriendFilmFeedTest {
+
+    @Autowired
+    private FriendFilmFeed friendFilmFeed;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private FilmLikeIndex likeIndex;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 8; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "feed" + i + "@example.com", "feed" + i, "Feed " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+        filmIds.clear();
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                    "VALUES (?, 'Description', '2000-01-01', 100, 1)", "Film " + i);
+        }
+        filmIds.addAll(jdbcTemplate.queryForList("SELECT film_id FROM films ORDER BY film_id", Long.class));
+        friendGraph.rebuild();
+        likeIndex.rebuild();
+    }
+
+    @Test
+    void shouldRankFilmsByFriendLikes() {
+        long user = userIds.get(0);
+        for (int friend = 1; friend <= 3; friend++) {
+            friendshipRepository.addFriend(user, userIds.get(friend));
+        }
+        like(0, 1, 2, 3);
+        like(1, 1, 2);
+        like(2, 3);
+        // Не друг: его лайки не считаются
+        like(3, 7);
+        like(2, 7);
+
+        assertThat(friendFilmFeed.getPopularFilmIds(user, 10))
+                .containsExactly(filmIds.get(0), filmIds.get(1), filmIds.get(2));
+        assertThat(friendFilmFeed.getPopularFilmIds(user, 2)).containsExactly(filmIds.get(0), filmIds.get(1));
+        assertThat(friendFilmFeed.getPopularFilmIds(userIds.get(6), 10)).isEmpty();
+    }
+
+    @Test
+    void shouldSampleFriendsAboveFanOutCap() {
+        long user = userIds.get(0);
+        for (int friend = 1; friend <= 5; friend++) {
+            friendshipRepository.addFriend(user, userIds.get(friend));
+        }
+        // Пять друзей при пороге 3: берётся каждый второй - друзья 1, 3 и 5
+        like(0, 1, 3, 5);
+        like(4, 2, 4);
+
+        assertThat(friendFilmFeed.getPopularFilmIds(user, 10)).containsExactly(filmIds.get(0));
+    }
+
+    private void like(int film, int... users) {
+        for (int user : users) {
+            filmRepository.addLike(filmIds.get(film), userIds.get(user));
+        }
+    }
+}
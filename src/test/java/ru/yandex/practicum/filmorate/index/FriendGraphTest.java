@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendGraph.class, FriendshipRepository.class, UserRowMapper.class})
+@TestPropertySource(properties = "filmorate.friends.graph.compact-threshold=2")
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FriendGraphTest {
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "graph" + i + "@example.com", "graph" + i, "Graph " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+    }
+
+    @Test
+    void shouldMatchFriendshipTableAcrossOverlayAndCompaction() {
+        // Часть рёбер попадает в базовый CSR, часть - в overlay, а порог 2 заставляет его сливаться
+        friendshipRepository.addFriend(user(0), user(3));
+        friendshipRepository.addFriend(user(0), user(1));
+        friendshipRepository.addFriend(user(2), user(1));
+        friendGraph.rebuild();
+        // Строки базового CSR отдаются окнами над одним массивом, без копирования
+        assertThat(friendGraph.neighbours(user(0)).array()).isSameAs(friendGraph.neighbours(user(2)).array());
+
+        friendshipRepository.addFriend(user(0), user(2));
+        friendshipRepository.addFriend(user(2), user(3));
+        friendshipRepository.removeFriend(user(0), user(1));
+        friendshipRepository.addFriend(user(4), user(3));
+        friendshipRepository.addFriend(user(1), user(0));
+
+        for (long userId : userIds) {
+            assertThat(friendGraph.getFriendIds(userId))
+                    .as("friends of %d", userId)
+                    .containsExactlyElementsOf(jdbcTemplate.queryForList(
+                            "SELECT friend_id FROM friendship WHERE user_id = ? ORDER BY friend_id",
+                            Long.class, userId));
+            assertThat(FriendGraph.toIds(friendGraph.incoming(userId)))
+                    .as("incoming of %d", userId)
+                    .containsExactlyElementsOf(jdbcTemplate.queryForList(
+                            "SELECT user_id FROM friendship WHERE friend_id = ? ORDER BY user_id",
+                            Long.class, userId));
+        }
+        assertThat(friendGraph.hasFriend(user(4), user(3))).isTrue();
+        assertThat(friendGraph.hasFriend(user(0), user(1))).isFalse();
+        assertThat(friendGraph.edgeCount()).isEqualTo(6);
+
+        friendGraph.compact();
+        // Исходящие строки до user(4) включительно, входящие - до user(3)
+        assertThat(friendGraph.memoryFootprintBytes())
+                .isEqualTo(16 + 4L * (user(4) + 2) + 16 + 4L * 6
+                        + 16 + 4L * (user(3) + 2) + 16 + 4L * 6);
+    }
+
+    private long user(int index) {
+        return userIds.get(index);
+    }
+}
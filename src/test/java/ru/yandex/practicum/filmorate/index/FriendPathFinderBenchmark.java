@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск цепочки дружбы {@link FriendPathFinder} между случайными пользователями на графе "тесного мира"
+ * Уоттса-Строгатца: кольцо, где каждый дружит с degree / 2 соседями с каждой стороны, и доля rewiring
+ * рёбер переброшена на случайных пользователей. Дружба взаимная, так что при 1M пользователей рёбер 10M.
+ * Режим SampleTime даёт перцентили задержки.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=FriendPathFinderBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class FriendPathFinderBenchmark {
+    private static final int MAX_DEPTH = 12;
+
+    @Param({"1000000"})
+    int users;
+
+    @Param({"10"})
+    int degree;
+
+    @Param({"0.1"})
+    double rewiring;
+
+    @Param({"1000000"})
+    int visitBudget;
+
+    private FriendGraph graph;
+    private FriendPathFinder pathFinder;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FriendshipRepository repository = new FriendshipRepository(null, null, null) {
+            @Override
+            public void forEachFriendship(EdgeConsumer consumer) {
+                SplittableRandom generator = new SplittableRandom(7);
+                for (int userId = 1; userId <= users; userId++) {
+                    for (int step = 1; step <= degree / 2; step++) {
+                        int friendId = 1 + (userId - 1 + step) % users;
+                        if (generator.nextDouble() < rewiring) {
+                            friendId = 1 + generator.nextInt(users);
+                        }
+                        if (friendId != userId) {
+                            consumer.accept(userId, friendId);
+                            consumer.accept(friendId, userId);
+                        }
+                    }
+                }
+            }
+        };
+        graph = new FriendGraph(repository, 10_000);
+        graph.rebuild();
+        pathFinder = new FriendPathFinder(graph, visitBudget);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graph.stop();
+    }
+
+    @Benchmark
+    public Optional<List<Long>> findPath() {
+        return pathFinder.findPath(1 + random.nextInt(users), 1 + random.nextInt(users), MAX_DEPTH);
+    }
+}
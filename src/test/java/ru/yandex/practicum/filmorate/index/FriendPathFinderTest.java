@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendPathFinder.class, FriendGraph.class, FriendshipRepository.class, UserRowMapper.class})
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FriendPathFinderTest {
+
+    @Autowired
+    private FriendPathFinder pathFinder;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 30; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "path" + i + "@example.com", "path" + i, "Path " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+        friendGraph.rebuild();
+    }
+
+    @Test
+    void shouldFindShortestPathLikeOneSidedBfs() {
+        Random random = new Random(19);
+        for (int i = 0; i < 45; i++) {
+            long userId = userIds.get(random.nextInt(userIds.size()));
+            long friendId = userIds.get(random.nextInt(userIds.size()));
+            if (userId != friendId && !friendGraph.hasFriend(userId, friendId)) {
+                friendshipRepository.addFriend(userId, friendId);
+            }
+        }
+
+        for (long from : userIds) {
+            Map<Long, Integer> distances = distancesFrom(from);
+            for (long to : userIds) {
+                Optional<List<Long>> path = pathFinder.findPath(from, to, 30);
+                if (!distances.containsKey(to)) {
+                    assertThat(path).as("%d -> %d", from, to).isEmpty();
+                    continue;
+                }
+                assertThat(path).as("%d -> %d", from, to).isPresent();
+                List<Long> chain = path.get();
+                assertThat(chain).hasSize(distances.get(to) + 1).startsWith(from).endsWith(to);
+                for (int step = 0; step + 1 < chain.size(); step++) {
+                    assertThat(friendGraph.hasFriend(chain.get(step), chain.get(step + 1))).isTrue();
+                }
+                if (distances.get(to) > 1) {
+                    assertThat(pathFinder.findPath(from, to, distances.get(to) - 1)).isEmpty();
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldGiveUpWhenVisitBudgetIsExhausted() {
+        // Цепочка 0 -> 1 -> ... -> 9 короче maxDepth, но бюджет в 3 посещения её не покрывает
+        for (int i = 0; i < 9; i++) {
+            friendshipRepository.addFriend(userIds.get(i), userIds.get(i + 1));
+        }
+        FriendPathFinder limited = new FriendPathFinder(friendGraph, 3);
+
+        assertThat(pathFinder.findPath(userIds.get(0), userIds.get(9), 12)).get().asList().hasSize(10);
+        assertThat(limited.findPath(userIds.get(0), userIds.get(9), 12)).isEmpty();
+        assertThat(limited.findPath(userIds.get(0), userIds.get(1), 12)).get().asList().hasSize(2);
+    }
+
+    private Map<Long, Integer> distancesFrom(long from) {
+        Map<Long, Integer> distances = new HashMap<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        distances.put(from, 0);
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            long current = queue.poll();
+            for (long next : friendGraph.getFriendIds(current)) {
+                if (distances.putIfAbsent(next, distances.get(current) + 1) == null) {
+                    queue.add(next);
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.event.FriendshipChangedEvent;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendSuggestionEngine.class, FriendGraph.class, FriendshipRepository.class, UserRowMapper.class,
+        FriendSuggestionEngineTest.MidwayRequest.class})
+@TestPropertySource(properties = "filmorate.friends.suggestions.fan-out-cap=3")
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FriendSuggestionEngineTest {
+
+    @Autowired
+    private FriendSuggestionEngine suggestionEngine;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MidwayRequest midwayRequest;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < 12; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "suggest" + i + "@example.com", "suggest" + i, "Suggest " + i, LocalDate.of(1990, 1, 1));
+        }
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class));
+        friendGraph.rebuild();
+    }
+
+    @Test
+    void shouldRankFriendsOfFriendsAndExcludeKnownUsers() {
+        // Друзья user(0): 1, 2, 3. user(4) знаком с двумя из них, user(5) и user(6) - с одним
+        add(0, 1);
+        add(0, 2);
+        add(0, 3);
+        add(1, 4);
+        add(2, 4);
+        add(1, 5);
+        add(3, 6);
+        add(3, 0);
+        add(1, 2);
+        // user(7) уже отправил заявку user(0), его предлагать не нужно
+        add(2, 7);
+        add(7, 0);
+
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId, FriendSuggestionEngine.Suggestion::mutualFriends)
+                .containsExactly(tuple(user(4), 2), tuple(user(5), 1), tuple(user(6), 1));
+        assertThat(suggestionEngine.suggest(user(0), 1))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(4));
+
+        // Кэш сбрасывается изменением дружбы
+        add(0, 4);
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(5), user(6));
+    }
+
+    @Test
+    void shouldInvalidateUsersWhoseSecondHopChanged() {
+        add(0, 1);
+        add(1, 2);
+        add(5, 6);
+        add(6, 7);
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(2));
+        assertThat(suggestionEngine.suggest(user(5), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(7));
+
+        // Новый друг у user(1) меняет второй шаг для user(0), а запись user(5) остаётся в кэше
+        add(1, 3);
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(2), user(3));
+        remove(1, 2);
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(3));
+        assertThat(suggestionEngine.suggest(user(5), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(7));
+    }
+
+    @Test
+    void shouldNotCacheSuggestionsComputedBeforeGraphUpdate() {
+        add(0, 1);
+        add(1, 2);
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(2));
+
+        // Запрос подсказок приходит между слушателями события, пока транзакции нет
+        midwayRequest.userId = user(0);
+        add(1, 3);
+        midwayRequest.userId = null;
+
+        assertThat(suggestionEngine.suggest(user(0), 10))
+                .extracting(FriendSuggestionEngine.Suggestion::userId)
+                .containsExactly(user(2), user(3));
+    }
+
+    @Test
+    void shouldSampleFriendsOfCelebrity() {
+        add(0, 1);
+        for (int i = 2; i < 12; i++) {
+            add(1, i);
+        }
+
+        // У user(1) 9 кандидатов, но при fan-out-cap = 3 просматривается только равномерная выборка
+        assertThat(suggestionEngine.suggest(user(0), 10)).hasSizeLessThanOrEqualTo(3).isNotEmpty();
+    }
+
+    private void add(int userIndex, int friendIndex) {
+        friendshipRepository.addFriend(user(userIndex), user(friendIndex));
+    }
+
+    private void remove(int userIndex, int friendIndex) {
+        friendshipRepository.removeFriend(user(userIndex), user(friendIndex));
+    }
+
+    private long user(int index) {
+        return userIds.get(index);
+    }
+
+    static class MidwayRequest {
+        private final FriendSuggestionEngine suggestionEngine;
+        private volatile Long userId;
+
+        MidwayRequest(FriendSuggestionEngine suggestionEngine) {
+            this.suggestionEngine = suggestionEngine;
+        }
+
+        @Order(0)
+        @EventListener
+        public void onFriendshipChanged(FriendshipChangedEvent event) {
+            Long requested = userId;
+            if (requested != null) {
+                suggestionEngine.suggest(requested, 10);
+            }
+        }
+    }
+}
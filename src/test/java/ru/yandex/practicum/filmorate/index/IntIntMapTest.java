@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntIntMapTest {
+
+    @Test
+    void shouldMatchHashMapAcrossGrowth() {
+        IntIntMap map = new IntIntMap(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(20_000);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    map.put(key, i);
+                    expected.put(key, i);
+                }
+                case 1 -> assertThat(map.putIfAbsent(key, i)).isEqualTo(expected.putIfAbsent(key, i) == null);
+                case 2 -> assertThat(map.remove(key)).isEqualTo(expected.remove(key) != null);
+                default -> assertThat(map.add(key, 2)).isEqualTo(expected.merge(key, 2, Integer::sum));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(map.get(-5, 7)).isEqualTo(7);
+        assertThat(map.containsKey(20_001)).isFalse();
+    }
+}
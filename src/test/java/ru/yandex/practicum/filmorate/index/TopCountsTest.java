@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopCountsTest {
+
+    @Test
+    void shouldMatchSortedCounts() {
+        IntIntMap counts = new IntIntMap(16);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(23);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(3_000);
+            counts.add(key, 1);
+            expected.merge(key, 1, Integer::sum);
+        }
+        counts.put(5_000, -3);
+
+        for (int k : new int[]{0, 1, 10, 500, 10_000}) {
+            int[] expectedKeys = expected.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Integer>comparingByValue(Comparator.reverseOrder())
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(k)
+                    .mapToInt(Map.Entry::getKey)
+                    .toArray();
+            assertThat(TopCounts.topKeys(counts, k)).as("k = %d", k).containsExactly(expectedKeys);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись лайка в {@link TrendingFilmsIndex} под конкуренцией потоков и чтение топа по окну.
+ * Половина лайков приходится на сотню популярных фильмов, как во время промо-акций.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=TrendingFilmsIndexBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrendingFilmsIndexBenchmark {
+    private static final int HOT_FILMS = 100;
+
+    @Param({"100000"})
+    int films;
+
+    private TrendingFilmsIndex index;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        index = new TrendingFilmsIndex(null);
+        now = System.currentTimeMillis();
+        SplittableRandom random = new SplittableRandom(42);
+        long week = Duration.ofDays(7).toMillis();
+        for (int filmId = 0; filmId < films; filmId++) {
+            index.record(filmId, now - random.nextLong(week), 1, now);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Likes {
+        private final SplittableRandom random = new SplittableRandom();
+
+        long nextFilmId(int films) {
+            return random.nextBoolean() ? random.nextInt(HOT_FILMS) : random.nextInt(films);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLike(Likes likes) {
+        index.record(likes.nextFilmId(films), now, 1, now);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLikeAndUnlike(Likes likes) {
+        long filmId = likes.nextFilmId(films);
+        index.record(filmId, now, 1, now);
+        index.record(filmId, now, -1, now);
+    }
+
+    @Benchmark
+    public List<Long> topOfDay() {
+        return index.getTopFilmIds(TrendingWindow.DAY, 10);
+    }
+}
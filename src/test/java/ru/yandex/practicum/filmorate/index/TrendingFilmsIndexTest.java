@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrendingFilmsIndexTest {
+    private static final long NOW = Duration.ofDays(1000).toMillis();
+
+    private final TrendingFilmsIndex index = new TrendingFilmsIndex(null);
+
+    @Test
+    void shouldRankFilmsWithinWindow() {
+        index.record(1L, NOW - Duration.ofMinutes(5).toMillis(), 1, NOW);
+        index.record(2L, NOW - Duration.ofHours(3).toMillis(), 1, NOW);
+        index.record(2L, NOW - Duration.ofHours(4).toMillis(), 1, NOW);
+        index.record(3L, NOW - Duration.ofDays(3).toMillis(), 1, NOW);
+        index.record(3L, NOW - Duration.ofDays(3).toMillis(), 1, NOW);
+        index.record(3L, NOW - Duration.ofDays(4).toMillis(), 1, NOW);
+
+        assertThat(index.getTopFilmIds(TrendingWindow.HOUR, 10)).containsExactly(1L);
+        assertThat(index.getTopFilmIds(TrendingWindow.DAY, 10)).containsExactly(2L, 1L);
+        assertThat(index.getTopFilmIds(TrendingWindow.WEEK, 10)).containsExactly(3L, 2L, 1L);
+        assertThat(index.getTopFilmIds(TrendingWindow.WEEK, 1)).containsExactly(3L);
+    }
+
+    @Test
+    void shouldAgeOutExpiredBuckets() {
+        index.record(1L, NOW, 1, NOW);
+        index.record(1L, NOW, -1, NOW);
+        index.record(2L, NOW, 1, NOW);
+
+        index.advance(NOW + Duration.ofHours(2).toMillis());
+        assertThat(index.getTopFilmIds(TrendingWindow.HOUR, 10)).isEmpty();
+        assertThat(index.getTopFilmIds(TrendingWindow.DAY, 10)).containsExactly(2L);
+
+        index.advance(NOW + Duration.ofDays(8).toMillis());
+        assertThat(index.getTopFilmIds(TrendingWindow.WEEK, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldMoveLikesOutOfWindowsAsTimePasses() {
+        index.record(1L, NOW - Duration.ofMinutes(30).toMillis(), 1, NOW);
+        index.record(1L, NOW - Duration.ofHours(20).toMillis(), 1, NOW);
+        index.record(2L, NOW - Duration.ofMinutes(10).toMillis(), 1, NOW);
+
+        index.advance(NOW + Duration.ofMinutes(40).toMillis());
+        assertThat(index.getTopFilmIds(TrendingWindow.HOUR, 10)).containsExactly(2L);
+        assertThat(index.getTopFilmIds(TrendingWindow.DAY, 10)).containsExactly(1L, 2L);
+
+        index.advance(NOW + Duration.ofHours(3).toMillis());
+        assertThat(index.getTopFilmIds(TrendingWindow.DAY, 10)).containsExactly(1L, 2L);
+
+        // Лайк двадцатичасовой давности выходит из суточного окна, но остаётся в недельном
+        long later = NOW + Duration.ofHours(4).toMillis();
+        index.advance(later);
+        index.record(2L, later, 1, later);
+        assertThat(index.getTopFilmIds(TrendingWindow.DAY, 10)).containsExactly(2L, 1L);
+        assertThat(index.getTopFilmIds(TrendingWindow.WEEK, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void shouldCountEveryUpdateUnderContention() throws InterruptedException {
+        int threads = 8;
+        int iterations = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    index.record(1L, NOW - (i % 60) * 1_000L, 1, NOW);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        index.record(2L, NOW, threads * iterations - 1, NOW);
+        assertThat(index.getTopFilmIds(TrendingWindow.HOUR, 2)).containsExactly(1L, 2L);
+    }
+}
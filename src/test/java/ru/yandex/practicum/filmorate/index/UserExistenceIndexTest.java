@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({UserExistenceIndex.class, UserRepository.class, UserRowMapper.class})
+@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class UserExistenceIndexTest {
+
+    @Autowired
+    private UserExistenceIndex index;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long existingId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "loaded@example.com", "loaded", "Loaded", LocalDate.of(1990, 1, 1));
+        existingId = jdbcTemplate.queryForObject("SELECT user_id FROM users", Long.class);
+        index.rebuild();
+    }
+
+    @Test
+    void shouldAnswerFromLoadedAndSavedUsers() {
+        assertThat(index.userExists(existingId)).isTrue();
+        assertThat(index.emailExists("loaded@example.com")).isTrue();
+        assertThat(index.userExists(existingId + 1000)).isFalse();
+        assertThat(index.emailExists("missing@example.com")).isFalse();
+
+        User saved = userRepository.addUser(
+                new User(null, "saved@example.com", "saved", "Saved", LocalDate.of(1995, 5, 5)));
+        assertThat(index.userExists(saved.getId())).isTrue();
+        assertThat(index.emailExists("saved@example.com")).isTrue();
+
+        saved.setEmail("changed@example.com");
+        userRepository.updateUser(saved);
+        assertThat(index.emailExists("changed@example.com")).isTrue();
+        // Старый адрес остаётся в фильтре, но EXISTS его не подтверждает
+        assertThat(index.emailExists("saved@example.com")).isFalse();
+    }
+
+    @Test
+    void shouldConfirmPositivesAgainstDatabase() {
+        // Удаление мимо репозитория: в структурах id и email остались, ответ даёт EXISTS
+        jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", existingId);
+
+        assertThat(index.userExists(existingId)).isFalse();
+        assertThat(index.emailExists("loaded@example.com")).isFalse();
+    }
+
+    @Test
+    void bloomFilterShouldKeepFalsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(filter.mightContain("user" + i + "@example.com")).isTrue();
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+        assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.015);
+    }
+}
@@ -9,20 +9,33 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
 import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
 import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
 import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.dal.UserRepository;
 import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.LikeResultDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmLikeIndex;
+import ru.yandex.practicum.filmorate.index.FilmLikerStore;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.model.film.Genre;
 import ru.yandex.practicum.filmorate.model.film.MpaRating;
 
 import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,33 +46,61 @@ import static org.junit.jupiter.api.Assertions.*;
 @Slf4j
 @Import({FilmDbService.class,
         FilmRepository.class,
+        FilmCache.class,
+        LikeWriteBehindBuffer.class,
         UserRepository.class,
         GenreRepositoryImpl.class,
         MpaRepositoryImpl.class,
+        FilmPopularityIndex.class,
+        FilmSimilarityIndex.class,
+        FilmLikeIndex.class,
+        FilmLikerStore.class,
+        TrendingFilmsIndex.class,
+        ReferenceDataRegistry.class,
         FilmRowMapper.class,
         UserRowMapper.class})
-@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 class FilmDbServiceTest {
 
     @Autowired
     private FilmDbService filmDbService;
 
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private FilmPopularityIndex popularityIndex;
+
+    @Autowired
+    private FilmSimilarityIndex similarityIndex;
+
+    @Autowired
+    private FilmLikeIndex likeIndex;
+
+    @Autowired
+    private TrendingFilmsIndex trendingIndex;
+
     private NewFilmRequest newFilmRequest;
     private UpdateFilmRequest updateFilmRequest;
 
     @BeforeEach
     void setUp() {
+        popularityIndex.rebuild();
+        likeIndex.rebuild();
+        similarityIndex.rebuild();
+        trendingIndex.rebuild();
+
         newFilmRequest = new NewFilmRequest();
         newFilmRequest.setName("Test Film");
         newFilmRequest.setDescription("Test Description");
         newFilmRequest.setReleaseDate(LocalDate.of(2000, 1, 1));
         newFilmRequest.setDuration(120);
 
-        MpaRating mpa = new MpaRating();
-        mpa.setId(1);
+        MpaRating mpa = new MpaRating(1, null, null);
         newFilmRequest.setMpa(mpa);
 
         updateFilmRequest = new UpdateFilmRequest();
@@ -96,6 +137,27 @@ class FilmDbServiceTest {
         assertThat(updatedFilm.getDuration()).isEqualTo(150);
     }
 
+    @Test
+    void shouldPatchOnlyGivenFieldsAndFailForMissingFilm() {
+        newFilmRequest.setGenres(new HashSet<>(List.of(new Genre(1, null))));
+        FilmDto addedFilm = filmDbService.addFilm(newFilmRequest);
+        UpdateFilmRequest patch = new UpdateFilmRequest();
+        patch.setId(addedFilm.getId());
+        patch.setName("Renamed");
+
+        FilmDto updatedFilm = filmDbService.updateFilm(addedFilm.getId(), patch);
+
+        assertThat(updatedFilm.getName()).isEqualTo("Renamed");
+        assertThat(updatedFilm.getDescription()).isEqualTo("Test Description");
+        assertThat(updatedFilm.getDuration()).isEqualTo(120);
+        assertThat(updatedFilm.getMpa().getName()).isEqualTo("G");
+        assertThat(updatedFilm.getGenres()).extracting(Genre::getId).containsExactly(1);
+        assertThat(filmDbService.getFilmById(addedFilm.getId()).getName()).isEqualTo("Renamed");
+
+        patch.setId(999L);
+        assertThrows(NotFoundException.class, () -> filmDbService.updateFilm(999L, patch));
+    }
+
     @Test
     void shouldGetAllFilms() {
         filmDbService.addFilm(newFilmRequest);
@@ -105,8 +167,7 @@ class FilmDbServiceTest {
         anotherFilm.setDescription("Another Description");
         anotherFilm.setReleaseDate(LocalDate.of(2001, 1, 1));
         anotherFilm.setDuration(90);
-        MpaRating mpa = new MpaRating();
-        mpa.setId(2);
+        MpaRating mpa = new MpaRating(2, null, null);
         anotherFilm.setMpa(mpa);
         filmDbService.addFilm(anotherFilm);
 
@@ -134,6 +195,45 @@ class FilmDbServiceTest {
                 .isEqualTo(0);
     }
 
+    @Test
+    void shouldToggleLikesIdempotently() {
+        FilmDto film = filmDbService.addFilm(newFilmRequest);
+
+        LikeResultDto liked = filmDbService.addLike(film.getId(), 1L);
+        LikeResultDto likedAgain = filmDbService.addLike(film.getId(), 1L);
+        assertThat(liked.isChanged()).isTrue();
+        assertThat(liked.getLikeCount()).isEqualTo(1);
+        assertThat(likedAgain.isChanged()).isFalse();
+        assertThat(likedAgain.getLikeCount()).isEqualTo(1);
+        assertThat(countLikes(film.getId(), 1L)).isEqualTo(1);
+        assertThat(likeCount(film.getId())).isEqualTo(1);
+
+        LikeResultDto unliked = filmDbService.removeLike(film.getId(), 1L);
+        LikeResultDto unlikedAgain = filmDbService.removeLike(film.getId(), 1L);
+        assertThat(unliked.getFilmId()).isEqualTo(film.getId());
+        assertThat(unliked.isLiked()).isFalse();
+        assertThat(unliked.isChanged()).isTrue();
+        assertThat(unliked.getLikeCount()).isZero();
+        assertThat(unlikedAgain.isChanged()).isFalse();
+        assertThat(unlikedAgain.getLikeCount()).isZero();
+        assertThat(countLikes(film.getId(), 1L)).isZero();
+        assertThat(likeCount(film.getId())).isZero();
+    }
+
+    @Test
+    void shouldThrowWhenLikeTargetsNotFound() {
+        FilmDto film = filmDbService.addFilm(newFilmRequest);
+
+        assertThrows(NotFoundException.class, () -> filmDbService.addLike(999L, 1L));
+        assertThrows(NotFoundException.class, () -> filmDbService.addLike(film.getId(), 999L));
+        assertThrows(NotFoundException.class, () -> filmDbService.removeLike(999L, 1L));
+        assertThrows(NotFoundException.class, () -> filmDbService.removeLike(film.getId(), 999L));
+    }
+
+    private int likeCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE film_id = ?", Integer.class, filmId);
+    }
+
     private int countLikes(long filmId, long userId) {
         Integer count = jdbcTemplate.queryForObject(
                 "SELECT COUNT(*) FROM film_likes WHERE film_id = ? AND user_id = ?",
@@ -153,8 +253,7 @@ class FilmDbServiceTest {
         anotherFilm.setDescription("More Popular Description");
         anotherFilm.setReleaseDate(LocalDate.of(2001, 1, 1));
         anotherFilm.setDuration(90);
-        MpaRating mpa = new MpaRating();
-        mpa.setId(2);
+        MpaRating mpa = new MpaRating(2, null, null);
         anotherFilm.setMpa(mpa);
         FilmDto film2 = filmDbService.addFilm(anotherFilm);
 
@@ -168,6 +267,32 @@ class FilmDbServiceTest {
         assertThat(popularFilms.get(0).getId()).isEqualTo(film2.getId());
     }
 
+    @Test
+    void shouldGetTrendingFilms() {
+        FilmDto film = filmDbService.addFilm(newFilmRequest);
+        filmDbService.addLike(film.getId(), 1L);
+
+        assertThat(filmDbService.getTrendingFilms("1h", 10))
+                .extracting(FilmDto::getId)
+                .containsExactly(film.getId());
+        assertThrows(ValidationException.class, () -> filmDbService.getTrendingFilms("2w", 10));
+    }
+
+    @Test
+    void shouldGetSimilarFilms() {
+        FilmDto film = filmDbService.addFilm(newFilmRequest);
+        FilmDto coLiked = filmDbService.addFilm(newFilmRequest);
+        filmDbService.addFilm(newFilmRequest);
+        filmDbService.addLike(film.getId(), 1L);
+        filmDbService.addLike(coLiked.getId(), 1L);
+        similarityIndex.applyPending();
+
+        assertThat(filmDbService.getSimilarFilms(film.getId(), null))
+                .extracting(FilmDto::getId)
+                .containsExactly(coLiked.getId());
+        assertThrows(NotFoundException.class, () -> filmDbService.getSimilarFilms(999L, 10));
+    }
+
     @Test
     void shouldThrowWhenFilmNotFound() {
         assertThrows(NotFoundException.class, () -> filmDbService.getFilmById(999L));
@@ -175,7 +300,26 @@ class FilmDbServiceTest {
 
     @Test
     void shouldThrowWhenMpaNotFound() {
-        newFilmRequest.getMpa().setId(999);
+        newFilmRequest.setMpa(new MpaRating(999, null, null));
         assertThrows(NotFoundException.class, () -> filmDbService.addFilm(newFilmRequest));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldThrowWhenGenreNotFound() {
+        newFilmRequest.setGenres(new HashSet<>(List.of(new Genre(1, null), new Genre(42, null))));
+        NotFoundException e = assertThrows(NotFoundException.class, () -> filmDbService.addFilm(newFilmRequest));
+        assertThat(e.getMessage()).contains("[42]");
+    }
+
+    @Test
+    void shouldShareReferenceDataInstances() {
+        newFilmRequest.setGenres(new HashSet<>(List.of(new Genre(2, null))));
+        FilmDto created = filmDbService.addFilm(newFilmRequest);
+
+        FilmDto loaded = filmDbService.getFilmById(created.getId());
+
+        assertThat(loaded.getMpa()).isSameAs(referenceData.findMpa(1).orElseThrow());
+        assertThat(loaded.getGenres()).singleElement().isSameAs(referenceData.findGenre(2).orElseThrow());
+        assertThat(referenceData.getGenres()).hasSize(6);
+    }
+}
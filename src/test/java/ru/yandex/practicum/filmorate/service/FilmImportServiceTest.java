@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({FilmImportService.class,
+        FilmRepository.class,
+        FilmCache.class,
+        LikeWriteBehindBuffer.class,
+        GenreRepositoryImpl.class,
+        MpaRepositoryImpl.class,
+        ReferenceDataRegistry.class,
+        FilmRowMapper.class,
+        LocalValidatorFactoryBean.class})
+@TestPropertySource(properties = {
+        "filmorate.films.bulk.batch-size=2",
+        "filmorate.films.bulk.commit-size=3"
+})
+@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class FilmImportServiceTest {
+
+    @Autowired
+    private FilmImportService filmImportService;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldImportValidLinesAndReportErrorsPerLine() throws IOException {
+        String ndjson = String.join("\n",
+                film("First", 1, "[{\"id\":1},{\"id\":2}]"),
+                "{not json",
+                film("Unknown MPA", 42, "[]"),
+                "",
+                film("Unknown genre", 1, "[{\"id\":99}]"),
+                "{\"name\":\"\",\"releaseDate\":\"2000-01-01\",\"duration\":-5,\"mpa\":{\"id\":1}}",
+                film("Second", 2, "[]"),
+                film("Third", 3, "[{\"id\":3}]"),
+                film("Fourth", 4, "null"));
+
+        List<ImportResultDto> results = new ArrayList<>();
+        filmImportService.importFilms(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), results::add);
+
+        assertThat(results).extracting(ImportResultDto::getLine).containsExactly(1L, 2L, 3L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(results).extracting(ImportResultDto::getStatus).containsExactly(
+                ImportResultDto.Status.CREATED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.CREATED,
+                ImportResultDto.Status.CREATED,
+                ImportResultDto.Status.CREATED);
+        assertThat(results.get(2).getError()).contains("MPA rating with id 42");
+        assertThat(results.get(3).getError()).contains("[99]");
+        assertThat(results.get(4).getError()).contains("duration").contains("name");
+
+        long firstId = results.get(0).getId();
+        assertThat(filmRepository.getFilmById(firstId)).hasValueSatisfying(film -> {
+            assertThat(film.getName()).isEqualTo("First");
+            assertThat(film.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(1, 2);
+        });
+        Integer films = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+        assertThat(films).isEqualTo(4);
+    }
+
+    private static String film(String name, int mpaId, String genres) {
+        return "{\"name\":\"" + name + "\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\"," +
+                "\"duration\":100,\"mpa\":{\"id\":" + mpaId + "},\"genres\":" + genres + "}";
+    }
+}
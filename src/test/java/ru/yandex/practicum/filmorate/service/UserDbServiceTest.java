@@ -8,20 +8,42 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmCache;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
 import ru.yandex.practicum.filmorate.dal.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.dal.MpaRepositoryImpl;
+import ru.yandex.practicum.filmorate.dal.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.dto.CommonFriendsCountDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.NewUserRequest;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.UpdateUserRequest;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.CommonFriendsEngine;
+import ru.yandex.practicum.filmorate.index.FilmLikeIndex;
+import ru.yandex.practicum.filmorate.index.FilmLikerStore;
+import ru.yandex.practicum.filmorate.index.FilmRecommendationEngine;
+import ru.yandex.practicum.filmorate.index.FriendFilmFeed;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendPathFinder;
+import ru.yandex.practicum.filmorate.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.index.UserExistenceIndex;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 
 @JdbcTest
@@ -29,8 +51,25 @@ import static org.junit.jupiter.api.Assertions.*;
 @Import({UserDbService.class,
         UserRepository.class,
         FriendshipRepository.class,
+        FriendGraph.class,
+        CommonFriendsEngine.class,
+        FriendSuggestionEngine.class,
+        FriendPathFinder.class,
+        UserExistenceIndex.class,
+        FilmRepository.class,
+        FilmCache.class,
+        LikeWriteBehindBuffer.class,
+        ReferenceDataRegistry.class,
+        GenreRepositoryImpl.class,
+        MpaRepositoryImpl.class,
+        FilmLikeIndex.class,
+        FilmLikerStore.class,
+        FilmRecommendationEngine.class,
+        FriendFilmFeed.class,
+        FilmRowMapper.class,
         UserRowMapper.class})
-@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/schema.sql", "/clean-data.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 class UserDbServiceTest {
 
     @Autowired
@@ -39,6 +78,18 @@ class UserDbServiceTest {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private UserExistenceIndex userExistenceIndex;
+
+    @Autowired
+    private FilmLikeIndex filmLikeIndex;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
     private NewUserRequest newUserRequest;
     private UpdateUserRequest updateUserRequest;
 
@@ -48,6 +99,9 @@ class UserDbServiceTest {
         jdbcTemplate.update("DELETE FROM friendship");
         jdbcTemplate.update("DELETE FROM users");
         jdbcTemplate.update("DELETE FROM films"); // если есть связи
+        friendGraph.rebuild();
+        userExistenceIndex.rebuild();
+        filmLikeIndex.rebuild();
 
         // Инициализация тестовых данных
         newUserRequest = new NewUserRequest();
@@ -106,6 +160,25 @@ class UserDbServiceTest {
         assertThat(users).hasSize(2);
     }
 
+    @Test
+    void shouldPageUsersWithCursor() {
+        for (int i = 0; i < 5; i++) {
+            newUserRequest.setEmail("user" + i + "@example.com");
+            newUserRequest.setLogin("login" + i);
+            userDbService.createUser(newUserRequest);
+        }
+
+        PageDto<UserDto> first = userDbService.getUsersPage(null, 2);
+        PageDto<UserDto> second = userDbService.getUsersPage(first.getNextCursor(), 2);
+        PageDto<UserDto> last = userDbService.getUsersPage(second.getNextCursor(), 2);
+
+        assertThat(first.getItems()).extracting(UserDto::getLogin).containsExactly("login0", "login1");
+        assertThat(second.getItems()).extracting(UserDto::getLogin).containsExactly("login2", "login3");
+        assertThat(last.getItems()).extracting(UserDto::getLogin).containsExactly("login4");
+        assertThat(last.getNextCursor()).isNull();
+        assertThrows(ValidationException.class, () -> userDbService.getUsersPage("not-a-cursor", 2));
+    }
+
     @Test
     void shouldThrowWhenUserNotFound() {
         assertThrows(NotFoundException.class, () -> userDbService.getUserById(999L));
@@ -131,6 +204,24 @@ class UserDbServiceTest {
         assertThat(userDbService.getFriends(user1.getId())).isEmpty();
     }
 
+    @Test
+    void shouldApplyConfirmedRequestToFriendGraph() {
+        UserDto user1 = userDbService.createUser(newUserRequest);
+        newUserRequest.setEmail("friend@example.com");
+        newUserRequest.setLogin("friendlogin");
+        UserDto user2 = userDbService.createUser(newUserRequest);
+        // Заявка, появившаяся в БД в обход приложения: граф о ней не знает
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id, status) VALUES (?, ?, 'PENDING')",
+                user2.getId(), user1.getId());
+        assertThat(userDbService.getFriends(user2.getId())).isEmpty();
+
+        userDbService.confirmFriend(user2.getId(), user1.getId());
+
+        assertThat(userDbService.getFriends(user2.getId()))
+                .extracting(UserDto::getId)
+                .containsExactly(user1.getId());
+    }
+
     @Test
     void shouldGetCommonFriends() {
         UserDto user1 = userDbService.createUser(newUserRequest);
@@ -148,6 +239,70 @@ class UserDbServiceTest {
 
         List<UserDto> commonFriends = userDbService.getCommonFriends(user1.getId(), user2.getId());
         assertThat(commonFriends).extracting(UserDto::getId).containsExactly(user3.getId());
+        assertThat(userDbService.countCommonFriends(user1.getId(), List.of(user2.getId(), user3.getId())))
+                .extracting(CommonFriendsCountDto::getUserId, CommonFriendsCountDto::getCommonFriends)
+                .containsExactly(tuple(user2.getId(), 1), tuple(user3.getId(), 0));
+        assertThat(userDbService.getFriendSuggestions(user1.getId(), null)).isEmpty();
+        assertThat(userDbService.getFriendshipPath(user1.getId(), user3.getId(), null))
+                .extracting(UserDto::getId)
+                .containsExactly(user1.getId(), user3.getId());
+        assertThrows(NotFoundException.class, () -> userDbService.getFriendshipPath(user1.getId(), user2.getId(), 3));
+    }
+
+    @Test
+    void shouldGetFilmRecommendations() {
+        UserDto user = userDbService.createUser(newUserRequest);
+        newUserRequest.setEmail("other@example.com");
+        UserDto other = userDbService.createUser(newUserRequest);
+        List<Long> filmIds = jdbcTemplate.queryForList("SELECT mpa_id FROM mpa_rating", Integer.class).stream()
+                .limit(2)
+                .map(mpaId -> {
+                    jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                            "VALUES ('Film', 'Description', '2000-01-01', 100, ?)", mpaId);
+                    return jdbcTemplate.queryForObject("SELECT MAX(film_id) FROM films", Long.class);
+                })
+                .toList();
+        filmRepository.addLike(filmIds.get(0), user.getId());
+        filmRepository.addLike(filmIds.get(0), other.getId());
+        filmRepository.addLike(filmIds.get(1), other.getId());
+
+        assertThat(userDbService.getFilmRecommendations(user.getId(), null))
+                .extracting(FilmDto::getId)
+                .containsExactly(filmIds.get(1));
+        assertThat(userDbService.getFilmRecommendations(other.getId(), 5)).isEmpty();
+        assertThrows(ValidationException.class, () -> userDbService.getFilmRecommendations(user.getId(), 0));
+        assertThrows(NotFoundException.class, () -> userDbService.getFilmRecommendations(9999L, 5));
+
+        userDbService.addFriend(user.getId(), other.getId());
+        assertThat(userDbService.getPopularFilmsAmongFriends(user.getId(), null))
+                .extracting(FilmDto::getId)
+                .containsExactly(filmIds.get(0), filmIds.get(1));
+        assertThrows(ValidationException.class, () -> userDbService.getPopularFilmsAmongFriends(user.getId(), -1));
+    }
+
+    @Test
+    void shouldPageLikedFilmsAndCheckLikes() {
+        UserDto user = userDbService.createUser(newUserRequest);
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                    "VALUES ('Film', 'Description', '2000-01-01', 100, 1)");
+            filmIds.add(jdbcTemplate.queryForObject("SELECT MAX(film_id) FROM films", Long.class));
+        }
+        filmRepository.addLike(filmIds.get(2), user.getId());
+        filmRepository.addLike(filmIds.get(0), user.getId());
+
+        PageDto<FilmDto> first = userDbService.getLikedFilmsPage(user.getId(), null, 1);
+        assertThat(first.getItems()).extracting(FilmDto::getId).containsExactly(filmIds.get(0));
+        assertThat(first.getNextCursor()).isNotNull();
+        PageDto<FilmDto> second = userDbService.getLikedFilmsPage(user.getId(), first.getNextCursor(), 1);
+        assertThat(second.getItems()).extracting(FilmDto::getId).containsExactly(filmIds.get(2));
+        assertThat(second.getNextCursor()).isNull();
+
+        assertThat(userDbService.getLikedFilmIds(user.getId(), List.of(filmIds.get(2), filmIds.get(1), filmIds.get(0))))
+                .containsExactly(filmIds.get(2), filmIds.get(0));
+        assertThrows(ValidationException.class, () -> userDbService.getLikedFilmsPage(user.getId(), null, 0));
+        assertThrows(NotFoundException.class, () -> userDbService.getLikedFilmIds(9999L, List.of(filmIds.get(0))));
     }
 
     @Test
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({UserImportService.class,
+        UserRepository.class,
+        UserRowMapper.class,
+        LocalValidatorFactoryBean.class})
+@TestPropertySource(properties = "filmorate.users.bulk.batch-size=3")
+@Sql(scripts = {"/schema.sql", "/test-data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldImportUsersAndRejectDuplicateEmailsPerRecord() throws IOException {
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "user1@example.com", "login1", "User One", LocalDate.of(1990, 1, 1));
+
+        String ndjson = String.join("\n",
+                user("new1@example.com", "new1", ""),
+                user("user1@example.com", "taken", "Taken"),
+                user("new1@example.com", "again", "Again"),
+                user("broken", "login with spaces", "Broken"),
+                user("new2@example.com", "new2", "Second"),
+                user("new3@example.com", "new3", "Third"));
+
+        List<ImportResultDto> results = new ArrayList<>();
+        userImportService.importUsers(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), results::add);
+
+        assertThat(results).extracting(ImportResultDto::getStatus).containsExactly(
+                ImportResultDto.Status.CREATED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.FAILED,
+                ImportResultDto.Status.CREATED,
+                ImportResultDto.Status.CREATED);
+        assertThat(results.get(1).getError()).isEqualTo("Email already exists");
+        assertThat(results.get(2).getError()).isEqualTo("Email duplicates line 1");
+        assertThat(results.get(3).getError()).contains("email").contains("login");
+
+        User created = userRepository.getUser(results.get(0).getId()).orElseThrow();
+        assertThat(created.getEmail()).isEqualTo("new1@example.com");
+        assertThat(created.getName()).isEqualTo("new1");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class)).isEqualTo(4);
+    }
+
+    @Test
+    void shouldFlushChunksOfRejectedLinesWithoutWaitingForValidOnes() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            lines.add(user("broken" + i, "login with spaces", "Broken"));
+        }
+        ByteArrayInputStream input = new ByteArrayInputStream(
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+
+        List<Integer> unreadOnFirstResult = new ArrayList<>();
+        List<ImportResultDto> results = new ArrayList<>();
+        userImportService.importUsers(input, result -> {
+            if (results.isEmpty()) {
+                unreadOnFirstResult.add(input.available());
+            }
+            results.add(result);
+        });
+
+        assertThat(results).hasSize(2000)
+                .allMatch(result -> result.getStatus() == ImportResultDto.Status.FAILED);
+        // Порция из одних отклонённых строк отдаётся сразу, а не копится до конца потока
+        assertThat(unreadOnFirstResult.getFirst()).isPositive();
+    }
+
+    private static String user(String email, String login, String name) {
+        return "{\"email\":\"" + email + "\",\"login\":\"" + login + "\",\"name\":\"" + name + "\"," +
+                "\"birthday\":\"1990-01-01\"}";
+    }
+}
@@ -0,0 +1,7 @@
+-- Тесты индексов идут без тестовой транзакции (индексы обновляются после коммита), поэтому данные
+-- предыдущего теста удаляются явно
+DELETE FROM film_likes;
+DELETE FROM film_genre;
+DELETE FROM films;
+DELETE FROM friendship;
+DELETE FROM users;